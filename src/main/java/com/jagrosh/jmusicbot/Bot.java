@@ -20,15 +20,19 @@ import java.util.concurrent.ScheduledExecutorService;
 import com.jagrosh.jdautilities.commons.waiter.EventWaiter;
 import com.jagrosh.jmusicbot.audio.AloneInVoiceHandler;
 import com.jagrosh.jmusicbot.audio.AudioHandler;
+import com.jagrosh.jmusicbot.audio.DefaultPlaylistStarter;
 import com.jagrosh.jmusicbot.audio.NowplayingHandler;
 import com.jagrosh.jmusicbot.audio.PlayerManager;
 import com.jagrosh.jmusicbot.gui.GUI;
 import com.jagrosh.jmusicbot.playlist.PlaylistLoader;
 import com.jagrosh.jmusicbot.settings.SettingsManager;
+import java.util.Collections;
+import java.util.List;
 import java.util.Objects;
 import net.dv8tion.jda.api.JDA;
 import net.dv8tion.jda.api.entities.Activity;
 import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.sharding.ShardManager;
 
 /**
  *
@@ -44,9 +48,11 @@ public class Bot
     private final PlaylistLoader playlists;
     private final NowplayingHandler nowplaying;
     private final AloneInVoiceHandler aloneInVoiceHandler;
+    private final DefaultPlaylistStarter defaultPlaylistStarter;
     
     private boolean shuttingDown = false;
     private JDA jda;
+    private ShardManager shardManager;
     private GUI gui;
     
     public Bot(EventWaiter waiter, BotConfig config, SettingsManager settings)
@@ -62,6 +68,7 @@ public class Bot
         this.nowplaying.init();
         this.aloneInVoiceHandler = new AloneInVoiceHandler(this);
         this.aloneInVoiceHandler.init();
+        this.defaultPlaylistStarter = new DefaultPlaylistStarter(this);
     }
     
     public BotConfig getConfig()
@@ -103,15 +110,46 @@ public class Bot
     {
         return aloneInVoiceHandler;
     }
+
+    public DefaultPlaylistStarter getDefaultPlaylistStarter()
+    {
+        return defaultPlaylistStarter;
+    }
     
+    /**
+     * @return the connection to Discord, or the first shard when sharded
+     */
     public JDA getJDA()
     {
-        return jda;
+        return shardManager == null ? jda : shardManager.getShardById(0);
+    }
+    
+    public ShardManager getShardManager()
+    {
+        return shardManager;
+    }
+    
+    /**
+     * @return every shard, or just the one connection when not sharded
+     */
+    public List<JDA> getShards()
+    {
+        return shardManager == null ? Collections.singletonList(jda) : shardManager.getShards();
+    }
+    
+    public Guild getGuildById(long guildId)
+    {
+        return shardManager == null ? jda.getGuildById(guildId) : shardManager.getGuildById(guildId);
+    }
+    
+    public List<Guild> getGuilds()
+    {
+        return shardManager == null ? jda.getGuilds() : shardManager.getGuilds();
     }
     
     public void closeAudioConnection(long guildId)
     {
-        Guild guild = jda.getGuildById(guildId);
+        Guild guild = getGuildById(guildId);
         if(guild!=null)
             threadpool.submit(() -> guild.getAudioManager().closeAudioConnection());
     }
@@ -119,8 +157,9 @@ public class Bot
     public void resetGame()
     {
         Activity game = config.getGame()==null || config.getGame().getName().equalsIgnoreCase("none") ? null : config.getGame();
-        if(!Objects.equals(jda.getPresence().getActivity(), game))
-            jda.getPresence().setActivity(game);
+        for(JDA shard: getShards())
+            if(!Objects.equals(shard.getPresence().getActivity(), game))
+                shard.getPresence().setActivity(game);
     }
 
     public void shutdown()
@@ -129,20 +168,25 @@ public class Bot
             return;
         shuttingDown = true;
         threadpool.shutdownNow();
-        if(jda.getStatus()!=JDA.Status.SHUTTING_DOWN)
+        for(JDA shard: getShards())
         {
-            jda.getGuilds().stream().forEach(g -> 
+            if(shard.getStatus()==JDA.Status.SHUTTING_DOWN)
+                continue;
+            shard.getGuilds().stream().forEach(g -> 
             {
                 g.getAudioManager().closeAudioConnection();
                 AudioHandler ah = (AudioHandler)g.getAudioManager().getSendingHandler();
                 if(ah!=null)
                 {
                     ah.stopAndClear();
-                    ah.getPlayer().destroy();
+                    ah.destroy();
                 }
             });
-            jda.shutdown();
+            shard.shutdown();
         }
+        if(shardManager!=null)
+            shardManager.shutdown();
+        settings.shutdown();
         if(gui!=null)
             gui.dispose();
         System.exit(0);
@@ -153,6 +197,11 @@ public class Bot
         this.jda = jda;
     }
     
+    public void setShardManager(ShardManager shardManager)
+    {
+        this.shardManager = shardManager;
+    }
+    
     public void setGUI(GUI gui)
     {
         this.gui = gui;
@@ -39,10 +39,12 @@ public class BotConfig
     private final static String END_TOKEN = "/// END OF JMUSICBOT CONFIG ///";
     
     private Path path = null;
-    private String token, prefix, altprefix, helpWord, playlistsFolder,
+    private String token, prefix, altprefix, helpWord, playlistsFolder, settingsStorage,
             successEmoji, warningEmoji, errorEmoji, loadingEmoji, searchingEmoji;
-    private boolean stayInChannel, songInGame, npImages, updatealerts, useEval, dbots;
-    private long owner, maxSeconds, aloneTimeUntilStop;
+    private boolean stayInChannel, songInGame, npImages, updatealerts, useEval, dbots, saveTrackCache;
+    private long owner, maxSeconds, aloneTimeUntilStop, preloadSeconds, trackCacheTime, trackCacheSearchTime;
+    private int settingsCache, shards, trackCache, playlistConcurrency, autoplaylistWindow,
+            sourceRateLimit, sourceFailures, interactiveLoaders, backgroundLoaders, autoplayRate;
     private double skipratio;
     private OnlineStatus status;
     private Activity game;
@@ -89,7 +91,22 @@ public class BotConfig
             useEval = config.getBoolean("eval");
             maxSeconds = config.getLong("maxtime");
             aloneTimeUntilStop = config.getLong("alonetimeuntilstop");
+            preloadSeconds = config.getLong("preloadseconds");
+            trackCache = config.getInt("trackcache");
+            trackCacheTime = config.getLong("trackcachetime");
+            trackCacheSearchTime = config.getLong("trackcachesearchtime");
+            saveTrackCache = config.getBoolean("savetrackcache");
+            playlistConcurrency = config.getInt("playlistconcurrency");
+            autoplaylistWindow = config.getInt("autoplaylistwindow");
+            sourceRateLimit = config.getInt("sourceratelimit");
+            sourceFailures = config.getInt("sourcefailures");
+            interactiveLoaders = config.getInt("interactiveloaders");
+            backgroundLoaders = config.getInt("backgroundloaders");
+            autoplayRate = config.getInt("autoplayrate");
             playlistsFolder = config.getString("playlistsfolder");
+            settingsStorage = config.getString("settingsstorage");
+            settingsCache = config.getInt("settingscache");
+            shards = config.getInt("shards");
             aliases = config.getConfig("aliases");
             transforms = config.getConfig("transforms");
             skipratio = config.getDouble("skipratio");
@@ -303,6 +320,21 @@ public class BotConfig
         return playlistsFolder;
     }
     
+    public String getSettingsStorage()
+    {
+        return settingsStorage;
+    }
+    
+    public int getSettingsCache()
+    {
+        return settingsCache;
+    }
+    
+    public int getShards()
+    {
+        return shards;
+    }
+    
     public boolean getDBots()
     {
         return dbots;
@@ -337,6 +369,66 @@ public class BotConfig
     {
         return aloneTimeUntilStop;
     }
+
+    public long getPreloadSeconds()
+    {
+        return preloadSeconds;
+    }
+    
+    public int getTrackCache()
+    {
+        return trackCache;
+    }
+    
+    public long getTrackCacheTime()
+    {
+        return trackCacheTime;
+    }
+    
+    public long getTrackCacheSearchTime()
+    {
+        return trackCacheSearchTime;
+    }
+    
+    public boolean saveTrackCache()
+    {
+        return saveTrackCache;
+    }
+    
+    public int getPlaylistConcurrency()
+    {
+        return playlistConcurrency;
+    }
+    
+    public int getAutoplaylistWindow()
+    {
+        return autoplaylistWindow;
+    }
+    
+    public int getSourceRateLimit()
+    {
+        return sourceRateLimit;
+    }
+    
+    public int getSourceFailures()
+    {
+        return sourceFailures;
+    }
+    
+    public int getInteractiveLoaders()
+    {
+        return interactiveLoaders;
+    }
+    
+    public int getBackgroundLoaders()
+    {
+        return backgroundLoaders;
+    }
+    
+    public int getAutoplayRate()
+    {
+        return autoplayRate;
+    }
     
     public boolean isTooLong(AudioTrack track)
     {
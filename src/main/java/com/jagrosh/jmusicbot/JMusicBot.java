@@ -27,6 +27,7 @@ import com.jagrosh.jmusicbot.commands.owner.*;
 import com.jagrosh.jmusicbot.entities.Prompt;
 import com.jagrosh.jmusicbot.gui.GUI;
 import com.jagrosh.jmusicbot.settings.SettingsManager;
+import com.jagrosh.jmusicbot.settings.SettingsStorage;
 import com.jagrosh.jmusicbot.utils.OtherUtil;
 import java.awt.Color;
 import java.util.Arrays;
@@ -34,6 +35,8 @@ import javax.security.auth.login.LoginException;
 import net.dv8tion.jda.api.*;
 import net.dv8tion.jda.api.entities.Activity;
 import net.dv8tion.jda.api.requests.GatewayIntent;
+import net.dv8tion.jda.api.sharding.DefaultShardManagerBuilder;
+import net.dv8tion.jda.api.sharding.ShardManager;
 import net.dv8tion.jda.api.utils.cache.CacheFlag;
 import net.dv8tion.jda.api.exceptions.ErrorResponseException;
 import org.slf4j.Logger;
@@ -85,7 +88,7 @@ public class JMusicBot
         
         // set up the listener
         EventWaiter waiter = new EventWaiter();
-        SettingsManager settings = new SettingsManager();
+        SettingsManager settings = new SettingsManager(SettingsStorage.create(config.getSettingsStorage()), config.getSettingsCache());
         Bot bot = new Bot(waiter, config, settings);
         CommandClient client = createCommandClient(config, settings, bot);
         
@@ -111,16 +114,38 @@ public class JMusicBot
         // attempt to log in and start
         try
         {
-            JDA jda = JDABuilder.create(config.getToken(), Arrays.asList(INTENTS))
-                    .enableCache(CacheFlag.MEMBER_OVERRIDES, CacheFlag.VOICE_STATE)
-                    .disableCache(CacheFlag.ACTIVITY, CacheFlag.CLIENT_STATUS, CacheFlag.EMOTE, CacheFlag.ONLINE_STATUS)
-                    .setActivity(config.isGameNone() ? null : Activity.playing("loading..."))
-                    .setStatus(config.getStatus()==OnlineStatus.INVISIBLE || config.getStatus()==OnlineStatus.OFFLINE 
-                            ? OnlineStatus.INVISIBLE : OnlineStatus.DO_NOT_DISTURB)
-                    .addEventListeners(client, waiter, new Listener(bot))
-                    .setBulkDeleteSplittingEnabled(true)
-                    .build();
-            bot.setJDA(jda);
+            Activity activity = config.isGameNone() ? null : Activity.playing("loading...");
+            OnlineStatus status = config.getStatus()==OnlineStatus.INVISIBLE || config.getStatus()==OnlineStatus.OFFLINE 
+                            ? OnlineStatus.INVISIBLE : OnlineStatus.DO_NOT_DISTURB;
+            JDA jda;
+            if(config.getShards() == 1)
+            {
+                jda = JDABuilder.create(config.getToken(), Arrays.asList(INTENTS))
+                        .enableCache(CacheFlag.MEMBER_OVERRIDES, CacheFlag.VOICE_STATE)
+                        .disableCache(CacheFlag.ACTIVITY, CacheFlag.CLIENT_STATUS, CacheFlag.EMOTE, CacheFlag.ONLINE_STATUS)
+                        .setActivity(activity)
+                        .setStatus(status)
+                        .addEventListeners(client, waiter, new Listener(bot))
+                        .setBulkDeleteSplittingEnabled(true)
+                        .build();
+                bot.setJDA(jda);
+            }
+            else
+            {
+                // each shard gets the same listeners, and events only ever come from the shard that owns the guild
+                ShardManager shardManager = DefaultShardManagerBuilder.create(config.getToken(), Arrays.asList(INTENTS))
+                        .setShardsTotal(config.getShards() > 0 ? config.getShards() : -1)
+                        .enableCache(CacheFlag.MEMBER_OVERRIDES, CacheFlag.VOICE_STATE)
+                        .disableCache(CacheFlag.ACTIVITY, CacheFlag.CLIENT_STATUS, CacheFlag.EMOTE, CacheFlag.ONLINE_STATUS)
+                        .setActivity(activity)
+                        .setStatus(status)
+                        .addEventListeners(client, waiter, new Listener(bot))
+                        .setBulkDeleteSplittingEnabled(true)
+                        .build();
+                bot.setShardManager(shardManager);
+                // the first shard is logged in before build() returns
+                jda = shardManager.getShardById(0);
+            }
 
             // check if something about the current startup is not supported
             String unsupportedReason = OtherUtil.getUnsupportedBotReason(jda);
@@ -128,7 +153,7 @@ public class JMusicBot
             {
                 prompt.alert(Prompt.Level.ERROR, "JMusicBot", "JMusicBot cannot be run on this Discord bot: " + unsupportedReason);
                 try{ Thread.sleep(5000);}catch(InterruptedException ignored){} // this is awful but until we have a better way...
-                jda.shutdown();
+                bot.getShards().forEach(JDA::shutdown);
                 System.exit(1);
             }
             
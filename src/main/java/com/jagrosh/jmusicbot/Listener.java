@@ -15,15 +15,17 @@
  */
 package com.jagrosh.jmusicbot;
 
+import com.jagrosh.jmusicbot.audio.AudioHandler;
 import com.jagrosh.jmusicbot.utils.OtherUtil;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import net.dv8tion.jda.api.JDA;
 import net.dv8tion.jda.api.entities.Guild;
 import net.dv8tion.jda.api.entities.User;
-import net.dv8tion.jda.api.entities.VoiceChannel;
 import net.dv8tion.jda.api.events.ReadyEvent;
 import net.dv8tion.jda.api.events.ShutdownEvent;
 import net.dv8tion.jda.api.events.guild.GuildJoinEvent;
+import net.dv8tion.jda.api.events.guild.voice.GuildVoiceDeafenEvent;
 import net.dv8tion.jda.api.events.guild.voice.GuildVoiceUpdateEvent;
 import net.dv8tion.jda.api.events.message.guild.GuildMessageDeleteEvent;
 import net.dv8tion.jda.api.hooks.ListenerAdapter;
@@ -38,6 +40,7 @@ import org.slf4j.LoggerFactory;
 public class Listener extends ListenerAdapter
 {
     private final Bot bot;
+    private final AtomicBoolean updateAlertsStarted = new AtomicBoolean(false);
     
     public Listener(Bot bot)
     {
@@ -54,20 +57,10 @@ public class Listener extends ListenerAdapter
             log.warn(event.getJDA().getInviteUrl(JMusicBot.RECOMMENDED_PERMS));
         }
         credit(event.getJDA());
-        event.getJDA().getGuilds().forEach((guild) -> 
-        {
-            try
-            {
-                String defpl = bot.getSettingsManager().getSettings(guild).getDefaultPlaylist();
-                VoiceChannel vc = bot.getSettingsManager().getSettings(guild).getVoiceChannel(guild);
-                if(defpl!=null && vc!=null && bot.getPlayerManager().setUpHandler(guild).playFromDefault())
-                {
-                    guild.getAudioManager().openAudioConnection(vc);
-                }
-            }
-            catch(Exception ignore) {}
-        });
-        if(bot.getConfig().useUpdateAlerts())
+        // started a few at a time, so a restart doesn't connect to every voice channel at once
+        bot.getDefaultPlaylistStarter().add(event.getJDA().getGuilds());
+        // every shard gets a ready event, but the owner should only be alerted once
+        if(bot.getConfig().useUpdateAlerts() && updateAlertsStarted.compareAndSet(false, true))
         {
             bot.getThreadpool().scheduleWithFixedDelay(() -> 
             {
@@ -97,6 +90,14 @@ public class Listener extends ListenerAdapter
     public void onGuildVoiceUpdate(@NotNull GuildVoiceUpdateEvent event)
     {
         bot.getAloneInVoiceHandler().onVoiceUpdate(event);
+        if(bot.getPlayerManager().hasHandler(event.getGuild()))
+            ((AudioHandler)event.getGuild().getAudioManager().getSendingHandler()).onVoiceUpdate(event);
+    }
+
+    @Override
+    public void onGuildVoiceDeafen(@NotNull GuildVoiceDeafenEvent event)
+    {
+        bot.getAloneInVoiceHandler().onDeafen(event);
     }
 
     @Override
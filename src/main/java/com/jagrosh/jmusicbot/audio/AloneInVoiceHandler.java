@@ -17,13 +17,14 @@ package com.jagrosh.jmusicbot.audio;
 
 import com.jagrosh.jmusicbot.Bot;
 import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.Member;
+import net.dv8tion.jda.api.entities.VoiceChannel;
+import net.dv8tion.jda.api.events.guild.voice.GuildVoiceDeafenEvent;
 import net.dv8tion.jda.api.events.guild.voice.GuildVoiceUpdateEvent;
 
-import java.time.Instant;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -33,7 +34,9 @@ import java.util.concurrent.TimeUnit;
 public class AloneInVoiceHandler
 {
     private final Bot bot;
-    private final HashMap<Long, Instant> aloneSince = new HashMap<>();
+    // listeners (not bots, not deafened) in the channels the bot is connected to, kept up to date from voice events
+    private final Map<Long, Integer> listeners = new ConcurrentHashMap<>();
+    private final Map<Long, ScheduledFuture<?>> aloneTimers = new ConcurrentHashMap<>();
     private long aloneTimeUntilStop = 0;
 
     public AloneInVoiceHandler(Bot bot)
@@ -44,55 +47,92 @@ public class AloneInVoiceHandler
     public void init()
     {
         aloneTimeUntilStop = bot.getConfig().getAloneTimeUntilStop();
-        if(aloneTimeUntilStop > 0)
-            bot.getThreadpool().scheduleWithFixedDelay(() -> check(), 0, 5, TimeUnit.SECONDS);
     }
     
-    private void check()
+    private void stop(long guildId)
     {
-        Set<Long> toRemove = new HashSet<>();
-        for(Map.Entry<Long, Instant> entrySet: aloneSince.entrySet())
-        {
-            if(entrySet.getValue().getEpochSecond() > Instant.now().getEpochSecond() - aloneTimeUntilStop) continue;
+        aloneTimers.remove(guildId);
+        Guild guild = bot.getGuildById(guildId);
+        if(guild == null || !isAlone(guild) || !bot.getPlayerManager().hasHandler(guild)) return;
 
-            Guild guild = bot.getJDA().getGuildById(entrySet.getKey());
+        ((AudioHandler) guild.getAudioManager().getSendingHandler()).stopAndClear();
+        guild.getAudioManager().closeAudioConnection();
+    }
 
-            if(guild == null)
-            {
-                toRemove.add(entrySet.getKey());
-                continue;
-            }
+    public void onVoiceUpdate(GuildVoiceUpdateEvent event)
+    {
+        Member member = event.getEntity();
+        Guild guild = member.getGuild();
+        if(member.equals(guild.getSelfMember()))
+        {
+            // the bot isn't in that channel anymore, so it doesn't need to be counted
+            if(event.getChannelLeft() != null)
+                listeners.remove(event.getChannelLeft().getIdLong());
+        }
+        else if(isListener(member))
+        {
+            // channels that aren't counted yet are counted from scratch later, which already includes this change
+            if(event.getChannelLeft() != null)
+                listeners.computeIfPresent(event.getChannelLeft().getIdLong(), (id, count) -> count - 1);
+            if(event.getChannelJoined() != null)
+                listeners.computeIfPresent(event.getChannelJoined().getIdLong(), (id, count) -> count + 1);
+        }
+        update(guild);
+    }
+
+    public void onDeafen(GuildVoiceDeafenEvent event)
+    {
+        VoiceChannel channel = event.getVoiceState().getChannel();
+        if(channel == null || event.getMember().getUser().isBot()) return;
+        listeners.computeIfPresent(channel.getIdLong(), (id, count) -> event.isDeafened() ? count - 1 : count + 1);
+        update(event.getGuild());
+    }
 
-            ((AudioHandler) guild.getAudioManager().getSendingHandler()).stopAndClear();
-            guild.getAudioManager().closeAudioConnection();
+    private void update(Guild guild)
+    {
+        if(aloneTimeUntilStop <= 0 || !bot.getPlayerManager().hasHandler(guild)) return;
 
-            toRemove.add(entrySet.getKey());
+        if(isAlone(guild))
+            aloneTimers.computeIfAbsent(guild.getIdLong(), id -> 
+                    bot.getThreadpool().schedule(() -> stop(id), aloneTimeUntilStop, TimeUnit.SECONDS));
+        else
+        {
+            ScheduledFuture<?> timer = aloneTimers.remove(guild.getIdLong());
+            if(timer != null)
+                timer.cancel(false);
         }
-        toRemove.forEach(id -> aloneSince.remove(id));
     }
 
-    public void onVoiceUpdate(GuildVoiceUpdateEvent event)
+    private boolean isAlone(Guild guild)
     {
-        if(aloneTimeUntilStop <= 0) return;
-
-        Guild guild = event.getEntity().getGuild();
-        if(!bot.getPlayerManager().hasHandler(guild)) return;
+        return guild.getAudioManager().getConnectedChannel() != null && getListeners(guild) == 0;
+    }
 
-        boolean alone = isAlone(guild);
-        boolean inList = aloneSince.containsKey(guild.getIdLong());
+    /**
+     * @param guild the guild to count listeners in
+     * @return how many members that aren't bots and aren't deafened are in the bot's voice channel
+     */
+    public int getListeners(Guild guild)
+    {
+        VoiceChannel channel = guild.getAudioManager().getConnectedChannel();
+        if(channel == null) return 0;
+        return listeners.computeIfAbsent(channel.getIdLong(), id -> countListeners(channel));
+    }
 
-        if(!alone && inList)
-            aloneSince.remove(guild.getIdLong());
-        else if(alone && !inList)
-            aloneSince.put(guild.getIdLong(), Instant.now());
+    /**
+     * Counts the listeners in any voice channel, going through its members
+     * @param channel the channel to count listeners in
+     * @return how many members that aren't bots and aren't deafened are in the channel
+     */
+    public static int countListeners(VoiceChannel channel)
+    {
+        return (int) channel.getMembers().stream()
+                .filter(x -> isListener(x))
+                .count();
     }
 
-    private boolean isAlone(Guild guild)
+    private static boolean isListener(Member member)
     {
-        if(guild.getAudioManager().getConnectedChannel() == null) return false;
-        return guild.getAudioManager().getConnectedChannel().getMembers().stream()
-                .noneMatch(x ->
-                        !x.getVoiceState().isDeafened()
-                        && !x.getUser().isBot());
+        return !member.getVoiceState().isDeafened() && !member.getUser().isBot();
     }
 }
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2026 John Grosh (john.a.grosh@gmail.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jagrosh.jmusicbot.audio;
+
+import com.sedmelluq.discord.lavaplayer.format.StandardAudioDataFormats;
+import com.sedmelluq.discord.lavaplayer.track.playback.AudioFrameProvider;
+import com.sedmelluq.discord.lavaplayer.track.playback.MutableAudioFrame;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+
+/**
+ * Copies each frame into the same buffer and hands that buffer out to be
+ * sent, so sending audio doesn't allocate anything per frame.
+ *
+ * The buffer is heap-backed rather than direct, since JDA reads the opus
+ * payload through the backing array, and a direct buffer would make it copy
+ * every packet.
+ *
+ * @author John Grosh (john.a.grosh@gmail.com)
+ */
+public class AudioFrameSender
+{
+    private final ByteBuffer buffer = ByteBuffer.allocate(StandardAudioDataFormats.DISCORD_OPUS.maximumChunkSize());
+    private final MutableAudioFrame frame = new MutableAudioFrame();
+
+    public AudioFrameSender()
+    {
+        frame.setBuffer(buffer);
+    }
+
+    /**
+     * Copies the next frame into the buffer
+     * @param provider where to take the frame from
+     * @return true if there was a frame
+     */
+    public boolean fill(AudioFrameProvider provider)
+    {
+        ((Buffer) buffer).clear();
+        return provider.provide(frame);
+    }
+
+    /**
+     * @return the buffer, holding the frame from the last {@link #fill}
+     */
+    public ByteBuffer next()
+    {
+        ((Buffer) buffer).flip();
+        return buffer;
+    }
+}
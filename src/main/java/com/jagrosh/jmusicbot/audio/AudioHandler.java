@@ -23,13 +23,15 @@ import com.sedmelluq.discord.lavaplayer.player.AudioPlayer;
 import com.sedmelluq.discord.lavaplayer.player.event.AudioEventAdapter;
 import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
 import com.sedmelluq.discord.lavaplayer.track.AudioTrackEndReason;
-import com.sedmelluq.discord.lavaplayer.track.playback.AudioFrame;
-import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 import com.jagrosh.jmusicbot.settings.Settings;
 import com.jagrosh.jmusicbot.utils.FormatUtil;
+import com.jagrosh.jmusicbot.utils.SerialExecutor;
 import com.sedmelluq.discord.lavaplayer.source.youtube.YoutubeAudioTrack;
 import java.nio.ByteBuffer;
 import net.dv8tion.jda.api.EmbedBuilder;
@@ -39,8 +41,17 @@ import net.dv8tion.jda.api.audio.AudioSendHandler;
 import net.dv8tion.jda.api.entities.Guild;
 import net.dv8tion.jda.api.entities.Message;
 import net.dv8tion.jda.api.entities.User;
+import net.dv8tion.jda.api.entities.VoiceChannel;
+import net.dv8tion.jda.api.events.guild.voice.GuildVoiceUpdateEvent;
 
 /**
+ * Plays audio and keeps the queue for one guild.
+ *
+ * The queue, votes and players are only changed from this guild's
+ * {@link SerialExecutor}: the public methods that change them hop onto it on
+ * their own, player events are handed to it, and music commands run on it.
+ * Code touching {@link #getQueue()} or {@link #getVotes()} from anywhere else
+ * has to go through {@link #call(Supplier)} or {@link #run(Runnable)}.
  *
  * @author John Grosh <john.a.grosh@gmail.com>
  */
@@ -51,52 +62,122 @@ public class AudioHandler extends AudioEventAdapter implements AudioSendHandler
     public final static String STOP_EMOJI  = "\u23F9"; // ⏹
 
     private final List<AudioTrack> defaultQueue = new LinkedList<>();
-    private final Set<String> votes = new HashSet<>();
+    // the default playlist, when it's loaded a few entries at a time as defaultQueue runs low
+    private Playlist defaultPlaylist = null;
+    private boolean defaultLoading = false, defaultFound = false;
+    private final VoteTracker votes = new VoteTracker();
     
     private final PlayerManager manager;
-    private final AudioPlayer audioPlayer;
     private final long guildId;
+    private final SerialExecutor executor;
+    
+    // each frame is copied into the same buffer, so sending audio doesn't allocate
+    private final AudioFrameSender sender = new AudioFrameSender();
     
-    private AudioFrame lastFrame;
+    private volatile AudioPlayer audioPlayer;
     private AbstractQueue<QueuedTrack> queue;
+    
+    // the next track is started paused on a second player shortly before the
+    // current one ends, so it is already buffered when it's time to switch
+    private AudioPlayer standbyPlayer;
+    private QueuedTrack preloadedFrom;
+    private AudioTrack preloadedTrack;
+    private ScheduledFuture<?> preloadTask;
+    private volatile long transitionStart = 0;
+    private volatile boolean transitionPreloaded = false;
+    private final AtomicInteger endsPending = new AtomicInteger(); // track ends not handled yet
 
     protected AudioHandler(PlayerManager manager, Guild guild, AudioPlayer player)
     {
         this.manager = manager;
         this.audioPlayer = player;
         this.guildId = guild.getIdLong();
+        this.executor = new SerialExecutor(manager.getHandlerExecutor());
 
         this.setQueueType(manager.getBot().getSettingsManager().getSettings(guildId).getQueueType());
     }
 
+    /**
+     * Runs something on this guild's executor and waits for the result
+     * @param <T> the type of the result
+     * @param action the thing to run
+     * @return the result
+     */
+    public <T> T call(Supplier<T> action)
+    {
+        return executor.call(action);
+    }
+    
+    public void run(Runnable action)
+    {
+        executor.run(action);
+    }
+    
+    /**
+     * Runs something on this guild's executor without waiting for it
+     * @param action the thing to run
+     */
+    public void submit(Runnable action)
+    {
+        if(executor.inExecutor())
+            action.run();
+        else
+            executor.execute(action);
+    }
+
     public void setQueueType(QueueType type)
     {
-        queue = type.createInstance(queue);
+        if(queue == null)
+            queue = type.createInstance(null);
+        else
+            run(() -> queue = type.createInstance(queue));
     }
 
     public int addTrackToFront(QueuedTrack qtrack)
     {
-        if(audioPlayer.getPlayingTrack()==null)
+        return call(() -> 
         {
-            audioPlayer.playTrack(qtrack.getTrack());
-            return -1;
-        }
-        else
-        {
-            queue.addAt(0, qtrack);
-            return 0;
-        }
+            if(isIdle())
+            {
+                audioPlayer.playTrack(qtrack.getTrack());
+                return -1;
+            }
+            else
+            {
+                queue.addAt(0, qtrack);
+                return 0;
+            }
+        });
     }
     
     public int addTrack(QueuedTrack qtrack)
     {
-        if(audioPlayer.getPlayingTrack()==null)
+        return call(() -> 
         {
-            audioPlayer.playTrack(qtrack.getTrack());
-            return -1;
-        }
-        else
-            return queue.add(qtrack);
+            if(isIdle())
+            {
+                audioPlayer.playTrack(qtrack.getTrack());
+                return -1;
+            }
+            else
+                return queue.add(qtrack);
+        });
+    }
+    
+    public void addTracks(List<QueuedTrack> qtracks)
+    {
+        if(qtracks.isEmpty())
+            return;
+        run(() -> 
+        {
+            if(isIdle())
+            {
+                audioPlayer.playTrack(qtracks.get(0).getTrack());
+                queue.addAll(qtracks.subList(1, qtracks.size()));
+            }
+            else
+                queue.addAll(qtracks);
+        });
     }
     
     public AbstractQueue<QueuedTrack> getQueue()
@@ -104,12 +185,39 @@ public class AudioHandler extends AudioEventAdapter implements AudioSendHandler
         return queue;
     }
     
+    /**
+     * @return true if nothing is playing and no track end is waiting to be
+     *         handled, so a new track can be started right away
+     */
+    private boolean isIdle()
+    {
+        return audioPlayer.getPlayingTrack()==null && endsPending.get()==0;
+    }
+    
     public void stopAndClear()
     {
-        queue.clear();
-        defaultQueue.clear();
-        audioPlayer.stopTrack();
-        //current = null;
+        run(() -> 
+        {
+            queue.clear();
+            defaultQueue.clear();
+            defaultPlaylist = null;
+            defaultLoading = false;
+            cancelPreload();
+            transitionStart = 0;
+            audioPlayer.stopTrack();
+            //current = null;
+        });
+    }
+    
+    public void destroy()
+    {
+        run(() -> 
+        {
+            cancelPreload();
+            audioPlayer.destroy();
+            if(standbyPlayer != null)
+                standbyPlayer.destroy();
+        });
     }
     
     public boolean isMusicPlaying(JDA jda)
@@ -117,11 +225,35 @@ public class AudioHandler extends AudioEventAdapter implements AudioSendHandler
         return guild(jda).getSelfMember().getVoiceState().inVoiceChannel() && audioPlayer.getPlayingTrack()!=null;
     }
     
-    public Set<String> getVotes()
+    public VoteTracker getVotes()
     {
         return votes;
     }
     
+    /**
+     * Keeps track of which voters are still in the bot's voice channel
+     * @param event the voice update
+     */
+    public void onVoiceUpdate(GuildVoiceUpdateEvent event)
+    {
+        Guild guild = event.getGuild();
+        VoiceChannel channel = guild.getAudioManager().getConnectedChannel();
+        long userId = event.getEntity().getIdLong();
+        if(userId == guild.getSelfMember().getIdLong())
+        {
+            // the bot moved to another channel, so the votes were cast by other listeners
+            if(event.getChannelLeft() != null)
+                submit(() -> votes.clear());
+            return;
+        }
+        if(channel == null)
+            return;
+        boolean joined = channel.equals(event.getChannelJoined());
+        boolean left = channel.equals(event.getChannelLeft());
+        if(joined != left)
+            submit(() -> votes.setPresent(userId, joined));
+    }
+    
     public AudioPlayer getPlayer()
     {
         return audioPlayer;
@@ -136,12 +268,30 @@ public class AudioHandler extends AudioEventAdapter implements AudioSendHandler
     }
     
     public boolean playFromDefault()
+    {
+        return call(this::startDefault);
+    }
+    
+    private boolean startDefault()
     {
         if(!defaultQueue.isEmpty())
         {
             audioPlayer.playTrack(defaultQueue.remove(0));
+            loadMoreDefault();
             return true;
         }
+        if(defaultPlaylist != null)
+        {
+            // the next track is played as soon as it's loaded
+            if(defaultLoading)
+                return true;
+            if(defaultPlaylist.hasMore())
+            {
+                loadMoreDefault();
+                return true;
+            }
+            defaultPlaylist = null;
+        }
         Settings settings = manager.getBot().getSettingsManager().getSettings(guildId);
         if(settings==null || settings.getDefaultPlaylist()==null)
             return false;
@@ -149,24 +299,88 @@ public class AudioHandler extends AudioEventAdapter implements AudioSendHandler
         Playlist pl = manager.getBot().getPlaylistLoader().getPlaylist(settings.getDefaultPlaylist());
         if(pl==null || pl.getItems().isEmpty())
             return false;
-        pl.loadTracks(manager, (at) -> 
+        if(manager.getBot().getConfig().getAutoplaylistWindow() > 0)
         {
-            if(audioPlayer.getPlayingTrack()==null)
+            defaultPlaylist = pl;
+            defaultFound = false;
+            loadMoreDefault();
+            return true;
+        }
+        pl.loadTracks(manager, (at) -> submit(() -> 
+        {
+            if(isIdle())
                 audioPlayer.playTrack(at);
             else
                 defaultQueue.add(at);
-        }, () -> 
+        }), () -> submit(() -> 
         {
             if(pl.getTracks().isEmpty() && !manager.getBot().getConfig().getStay())
                 manager.getBot().closeAudioConnection(guildId);
-        });
+        }));
         return true;
     }
     
+    /**
+     * Loads more of the default playlist, if it's being loaded a few entries
+     * at a time and not enough of its tracks are waiting in defaultQueue
+     */
+    private void loadMoreDefault()
+    {
+        Playlist pl = defaultPlaylist;
+        int window = manager.getBot().getConfig().getAutoplaylistWindow();
+        if(pl==null || defaultLoading || !pl.hasMore() || defaultQueue.size() >= window)
+            return;
+        defaultLoading = true;
+        pl.loadMore(manager, window - defaultQueue.size(), (ats) -> submit(() -> 
+        {
+            // anything still loading after the playlist was stopped is thrown away
+            if(pl != defaultPlaylist)
+                return;
+            for(AudioTrack at: ats)
+            {
+                defaultFound = true;
+                if(isIdle())
+                    audioPlayer.playTrack(at);
+                else
+                    defaultQueue.add(at);
+            }
+        }), () -> submit(() -> 
+        {
+            if(pl != defaultPlaylist)
+                return;
+            defaultLoading = false;
+            if(pl.hasMore())
+                loadMoreDefault();
+            else if(!defaultFound)
+            {
+                defaultPlaylist = null;
+                if(!manager.getBot().getConfig().getStay())
+                    manager.getBot().closeAudioConnection(guildId);
+            }
+            else if(isIdle() && defaultQueue.isEmpty())
+                startDefault(); // the last entries failed, so start the playlist over
+        }));
+    }
+    
     // Audio Events
     @Override
     public void onTrackEnd(AudioPlayer player, AudioTrack track, AudioTrackEndReason endReason) 
     {
+        // counted right away, on the player's thread, so tracks added before
+        // this is handled wait in the queue instead of jumping ahead of it
+        endsPending.incrementAndGet();
+        submit(() -> 
+        {
+            endsPending.decrementAndGet();
+            handleTrackEnd(player, track, endReason);
+        });
+    }
+    
+    private void handleTrackEnd(AudioPlayer player, AudioTrack track, AudioTrackEndReason endReason)
+    {
+        // events from the standby player are only preloads being replaced
+        if(player != audioPlayer)
+            return;
         RepeatMode repeatMode = manager.getBot().getSettingsManager().getSettings(guildId).getRepeatMode();
         // if the track ended normally, and we're in repeat mode, re-add it to the queue
         if(endReason==AudioTrackEndReason.FINISHED && repeatMode != RepeatMode.OFF)
@@ -178,9 +392,13 @@ public class AudioHandler extends AudioEventAdapter implements AudioSendHandler
                 queue.addAt(0, clone);
         }
         
+        // something was already started while this event was waiting its turn
+        if(player.getPlayingTrack() != null)
+            return;
+        
         if(queue.isEmpty())
         {
-            if(!playFromDefault())
+            if(!startDefault())
             {
                 manager.getBot().getNowplayingHandler().onTrackUpdate(null);
                 if(!manager.getBot().getConfig().getStay())
@@ -193,15 +411,103 @@ public class AudioHandler extends AudioEventAdapter implements AudioSendHandler
         else
         {
             QueuedTrack qt = queue.pull();
-            player.playTrack(qt.getTrack());
+            transitionStart = System.nanoTime();
+            transitionPreloaded = switchToPreloaded(qt);
+            if(!transitionPreloaded)
+                player.playTrack(qt.getTrack());
         }
     }
 
     @Override
     public void onTrackStart(AudioPlayer player, AudioTrack track) 
     {
+        submit(() -> handleTrackStart(player, track));
+    }
+    
+    private void handleTrackStart(AudioPlayer player, AudioTrack track)
+    {
+        if(player != audioPlayer)
+            return;
         votes.clear();
         manager.getBot().getNowplayingHandler().onTrackUpdate(track);
+        schedulePreload(track, 0);
+    }
+    
+    // Preloading
+    private void schedulePreload(AudioTrack track, long delay)
+    {
+        if(preloadTask != null)
+            preloadTask.cancel(false);
+        preloadTask = manager.getBot().getThreadpool().schedule(() -> submit(() -> preload(track)), delay, TimeUnit.MILLISECONDS);
+    }
+    
+    private void preload(AudioTrack track)
+    {
+        long window = manager.getBot().getConfig().getPreloadSeconds() * 1000;
+        if(window <= 0 || track.getInfo().isStream || audioPlayer.getPlayingTrack() != track)
+            return;
+        long remaining = track.getDuration() - track.getPosition();
+        if(remaining > window)
+        {
+            // check again later, in case the track got paused or seeked in the meantime
+            schedulePreload(track, Math.max(1000, remaining - window));
+            return;
+        }
+        QueuedTrack next = queue.isEmpty() ? null : queue.get(0);
+        if(next != preloadedFrom)
+        {
+            discardPreload();
+            if(next != null)
+            {
+                if(standbyPlayer == null)
+                {
+                    standbyPlayer = manager.createPlayer();
+                    standbyPlayer.addListener(this);
+                }
+                // play a clone, so the queued track can still be played normally if the preload isn't used
+                preloadedFrom = next;
+                preloadedTrack = next.getTrack().makeClone();
+                standbyPlayer.setPaused(true);
+                standbyPlayer.playTrack(preloadedTrack);
+            }
+        }
+        // the head of the queue can change until the track ends
+        schedulePreload(track, 1000);
+    }
+    
+    private boolean switchToPreloaded(QueuedTrack next)
+    {
+        if(preloadedFrom != next || standbyPlayer.getPlayingTrack() != preloadedTrack)
+        {
+            discardPreload();
+            return false;
+        }
+        AudioPlayer previous = audioPlayer;
+        AudioTrack track = preloadedTrack;
+        preloadedFrom = null;
+        preloadedTrack = null;
+        standbyPlayer.setVolume(previous.getVolume());
+        audioPlayer = standbyPlayer;
+        standbyPlayer = previous;
+        audioPlayer.setPaused(previous.isPaused());
+        handleTrackStart(audioPlayer, track);
+        return true;
+    }
+    
+    private void discardPreload()
+    {
+        if(preloadedTrack != null && standbyPlayer.getPlayingTrack() == preloadedTrack)
+            standbyPlayer.stopTrack();
+        preloadedFrom = null;
+        preloadedTrack = null;
+    }
+    
+    private void cancelPreload()
+    {
+        if(preloadTask != null)
+            preloadTask.cancel(false);
+        preloadTask = null;
+        discardPreload();
     }
 
     
@@ -271,39 +577,40 @@ public class AudioHandler extends AudioEventAdapter implements AudioSendHandler
         return audioPlayer.isPaused() ? PAUSE_EMOJI : PLAY_EMOJI;
     }
     
-    // Audio Send Handler methods
-    /*@Override
-    public boolean canProvide() 
+    /**
+     * Sums up what the now playing message shows, apart from the exact time,
+     * so the message only has to be edited when this changes
+     * @param jda the JDA instance of this guild
+     * @return the current state, or null if nothing is playing
+     */
+    public String getNowPlayingState(JDA jda)
     {
-        if (lastFrame == null)
-            lastFrame = audioPlayer.provide();
-
-        return lastFrame != null;
+        AudioTrack track = audioPlayer.getPlayingTrack();
+        if(track==null || !isMusicPlaying(jda))
+            return null;
+        return getStatusEmoji() 
+                + " " + FormatUtil.progressCell((double)track.getPosition()/track.getDuration()) 
+                + " " + FormatUtil.volumeIcon(audioPlayer.getVolume()) 
+                + " " + track.getIdentifier();
     }
-
-    @Override
-    public byte[] provide20MsAudio() 
-    {
-        if (lastFrame == null) 
-            lastFrame = audioPlayer.provide();
-
-        byte[] data = lastFrame != null ? lastFrame.getData() : null;
-        lastFrame = null;
-
-        return data;
-    }*/
     
+    // Audio Send Handler methods
     @Override
     public boolean canProvide() 
     {
-        lastFrame = audioPlayer.provide();
-        return lastFrame != null;
+        boolean provided = sender.fill(audioPlayer);
+        if(provided && transitionStart != 0)
+        {
+            manager.getTransitionStats().record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - transitionStart), transitionPreloaded);
+            transitionStart = 0;
+        }
+        return provided;
     }
 
     @Override
     public ByteBuffer provide20MsAudio() 
     {
-        return ByteBuffer.wrap(lastFrame.getData());
+        return sender.next();
     }
 
     @Override
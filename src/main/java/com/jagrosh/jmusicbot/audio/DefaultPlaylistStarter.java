@@ -0,0 +1,176 @@
+/*
+ * Copyright 2026 John Grosh <john.a.grosh@gmail.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jagrosh.jmusicbot.audio;
+
+import com.jagrosh.jmusicbot.Bot;
+import com.jagrosh.jmusicbot.settings.Settings;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.VoiceChannel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Starts the default playlists of servers when the bot starts up, a few at a
+ * time instead of all at once, so a restart doesn't open hundreds of voice
+ * connections in the same moment. Servers with people already waiting in the
+ * voice channel go first.
+ *
+ * @author John Grosh (john.a.grosh@gmail.com)
+ */
+public class DefaultPlaylistStarter
+{
+    private final static Logger LOG = LoggerFactory.getLogger(DefaultPlaylistStarter.class);
+    private final Bot bot;
+    private final PriorityQueue<Waiting> waiting = new PriorityQueue<>();
+    private final Set<Long> queued = new HashSet<>();
+    private ScheduledFuture<?> task;
+    private long sequence = 0; // keeps servers with the same listeners in the order they were added
+    private int total = 0, started = 0;
+    private long startedAt;
+
+    public DefaultPlaylistStarter(Bot bot)
+    {
+        this.bot = bot;
+    }
+
+    /**
+     * Queues up the servers that have a default playlist and a voice channel set,
+     * and starts going through them if it isn't already
+     * @param guilds the servers that just became available
+     */
+    public void add(List<Guild> guilds)
+    {
+        int added = 0;
+        synchronized(this)
+        {
+            for(Guild guild: guilds)
+            {
+                try
+                {
+                    VoiceChannel vc = getChannel(guild);
+                    if(vc == null || !queued.add(guild.getIdLong()))
+                        continue;
+                    waiting.add(new Waiting(guild.getIdLong(), AloneInVoiceHandler.countListeners(vc), sequence++));
+                    added++;
+                }
+                catch(Exception ignore) {}
+            }
+            total += added;
+            if(added == 0 || task != null)
+                return;
+            startedAt = System.currentTimeMillis();
+            int rate = bot.getConfig().getAutoplayRate();
+            long period = rate > 0 ? Math.max(1, 1000 / rate) : 1;
+            task = bot.getThreadpool().scheduleAtFixedRate(() -> startNext(rate > 0 ? 1 : Integer.MAX_VALUE), 0, period, TimeUnit.MILLISECONDS);
+        }
+        LOG.info("Starting default playlists in " + added + " servers" + (bot.getConfig().getAutoplayRate() > 0
+                ? ", " + bot.getConfig().getAutoplayRate() + " per second" : ""));
+    }
+
+    /**
+     * @return how many servers have had their default playlist started, and how many were queued in total
+     */
+    public synchronized String getProgress()
+    {
+        return started + "/" + total + (task == null ? "" : " (" + waiting.size() + " waiting)");
+    }
+
+    private void startNext(int count)
+    {
+        for(int i = 0; i < count; i++)
+        {
+            Waiting next;
+            synchronized(this)
+            {
+                next = waiting.poll();
+                if(next == null)
+                {
+                    finish();
+                    return;
+                }
+                queued.remove(next.guildId);
+                started++;
+                if(started % 100 == 0)
+                    LOG.info("Started default playlists in " + started + " of " + total + " servers");
+            }
+            start(next.guildId);
+        }
+    }
+
+    private void start(long guildId)
+    {
+        try
+        {
+            Guild guild = bot.getGuildById(guildId);
+            if(guild == null)
+                return;
+            // someone may have started playing something while this server was waiting
+            if(bot.getPlayerManager().hasHandler(guild)
+                    && ((AudioHandler)guild.getAudioManager().getSendingHandler()).getPlayer().getPlayingTrack() != null)
+                return;
+            VoiceChannel vc = getChannel(guild);
+            if(vc != null && bot.getPlayerManager().setUpHandler(guild).playFromDefault())
+                guild.getAudioManager().openAudioConnection(vc);
+        }
+        catch(Exception ignore) {}
+    }
+
+    private void finish()
+    {
+        if(task == null)
+            return;
+        task.cancel(false);
+        task = null;
+        LOG.info("Started default playlists in " + started + " of " + total + " servers in "
+                + (System.currentTimeMillis() - startedAt) / 1000 + " seconds");
+    }
+
+    private VoiceChannel getChannel(Guild guild)
+    {
+        Settings settings = bot.getSettingsManager().getSettings(guild);
+        if(settings.getDefaultPlaylist() == null)
+            return null;
+        return settings.getVoiceChannel(guild);
+    }
+
+    private static class Waiting implements Comparable<Waiting>
+    {
+        private final long guildId;
+        private final int listeners;
+        private final long sequence;
+
+        private Waiting(long guildId, int listeners, long sequence)
+        {
+            this.guildId = guildId;
+            this.listeners = listeners;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(Waiting other)
+        {
+            if(listeners != other.listeners)
+                return Integer.compare(other.listeners, listeners);
+            return Long.compare(sequence, other.sequence);
+        }
+    }
+}
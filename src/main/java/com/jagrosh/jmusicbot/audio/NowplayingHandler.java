@@ -18,11 +18,12 @@ package com.jagrosh.jmusicbot.audio;
 import com.jagrosh.jmusicbot.Bot;
 import com.jagrosh.jmusicbot.entities.Pair;
 import com.jagrosh.jmusicbot.settings.Settings;
+import com.jagrosh.jmusicbot.utils.TimingWheel;
 import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 import net.dv8tion.jda.api.Permission;
 import net.dv8tion.jda.api.entities.Activity;
 import net.dv8tion.jda.api.entities.Guild;
@@ -37,66 +38,123 @@ import net.dv8tion.jda.api.exceptions.RateLimitedException;
  */
 public class NowplayingHandler
 {
+    private final static long MIN_REFRESH = 5000, MAX_REFRESH = 30000; // milliseconds
     private final Bot bot;
-    private final HashMap<Long,Pair<Long,Long>> lastNP; // guild -> channel,message
+    private final Map<Long,Pair<Long,Long>> lastNP; // guild -> channel,message
+    private final Map<Long,String> lastState; // guild -> what the message currently shows
+    // each message gets its own refresh deadline, so the edits are spread out instead of all being sent at once
+    private final TimingWheel<Pair<Long,Long>> refreshes = new TimingWheel<>(128, 250); // guild,message
+    private final LongAdder editsSent = new LongAdder(), editsSkipped = new LongAdder();
     
     public NowplayingHandler(Bot bot)
     {
         this.bot = bot;
-        this.lastNP = new HashMap<>();
+        this.lastNP = new ConcurrentHashMap<>();
+        this.lastState = new ConcurrentHashMap<>();
     }
     
     public void init()
     {
         if(!bot.getConfig().useNPImages())
-            bot.getThreadpool().scheduleWithFixedDelay(() -> updateAll(), 0, 5, TimeUnit.SECONDS);
+            bot.getThreadpool().scheduleWithFixedDelay(() -> refreshes.advance(this::update), 
+                    0, refreshes.getTickMillis(), TimeUnit.MILLISECONDS);
     }
     
     public void setLastNPMessage(Message m)
     {
         lastNP.put(m.getGuild().getIdLong(), new Pair<>(m.getTextChannel().getIdLong(), m.getIdLong()));
+        lastState.remove(m.getGuild().getIdLong());
+        if(!bot.getConfig().useNPImages())
+            refreshes.schedule(new Pair<>(m.getGuild().getIdLong(), m.getIdLong()), 
+                    refreshDelay((AudioHandler)m.getGuild().getAudioManager().getSendingHandler()));
     }
     
     public void clearLastNPMessage(Guild guild)
     {
-        lastNP.remove(guild.getIdLong());
+        remove(guild.getIdLong());
     }
     
-    private void updateAll()
+    public long getEditsSent()
     {
-        Set<Long> toRemove = new HashSet<>();
-        for(long guildId: lastNP.keySet())
+        return editsSent.sum();
+    }
+    
+    public long getEditsSkipped()
+    {
+        return editsSkipped.sum();
+    }
+    
+    public int getScheduledRefreshes()
+    {
+        return refreshes.size();
+    }
+    
+    private void remove(long guildId)
+    {
+        lastNP.remove(guildId);
+        lastState.remove(guildId);
+    }
+    
+    /**
+     * How long to wait before looking at a message again. The progress bar only
+     * moves every twelfth of the track, so there's no point checking long tracks
+     * as often as short ones
+     */
+    private long refreshDelay(AudioHandler handler)
+    {
+        AudioTrack track = handler==null ? null : handler.getPlayer().getPlayingTrack();
+        if(track==null || track.getInfo().isStream || handler.getPlayer().isPaused())
+            return MIN_REFRESH;
+        return Math.max(MIN_REFRESH, Math.min(MAX_REFRESH, track.getDuration()/12));
+    }
+    
+    private void update(Pair<Long,Long> refresh)
+    {
+        long guildId = refresh.getKey();
+        Pair<Long,Long> pair = lastNP.get(guildId);
+        // the message was replaced or removed since this refresh was scheduled
+        if(pair==null || !pair.getValue().equals(refresh.getValue()))
+            return;
+        Guild guild = bot.getGuildById(guildId);
+        if(guild==null)
+        {
+            remove(guildId);
+            return;
+        }
+        TextChannel tc = guild.getTextChannelById(pair.getKey());
+        AudioHandler handler = (AudioHandler)guild.getAudioManager().getSendingHandler();
+        if(tc==null || handler==null)
+        {
+            remove(guildId);
+            return;
+        }
+        // nothing visible has changed, so there's no need to spend a request on it
+        String state = handler.getNowPlayingState(guild.getJDA());
+        if(state!=null && state.equals(lastState.get(guildId)))
+        {
+            editsSkipped.increment();
+            refreshes.schedule(refresh, refreshDelay(handler));
+            return;
+        }
+        Message msg = handler.getNowPlaying(guild.getJDA());
+        try 
         {
-            Guild guild = bot.getJDA().getGuildById(guildId);
-            if(guild==null)
-            {
-                toRemove.add(guildId);
-                continue;
-            }
-            Pair<Long,Long> pair = lastNP.get(guildId);
-            TextChannel tc = guild.getTextChannelById(pair.getKey());
-            if(tc==null)
-            {
-                toRemove.add(guildId);
-                continue;
-            }
-            AudioHandler handler = (AudioHandler)guild.getAudioManager().getSendingHandler();
-            Message msg = handler.getNowPlaying(bot.getJDA());
             if(msg==null)
             {
-                msg = handler.getNoMusicPlaying(bot.getJDA());
-                toRemove.add(guildId);
-            }
-            try 
-            {
-                tc.editMessageById(pair.getValue(), msg).queue(m->{}, t -> lastNP.remove(guildId));
-            } 
-            catch(Exception e) 
-            {
-                toRemove.add(guildId);
+                remove(guildId);
+                tc.editMessageById(pair.getValue(), handler.getNoMusicPlaying(guild.getJDA())).queue(m->{}, t->{});
+                editsSent.increment();
+                return;
             }
+            tc.editMessageById(pair.getValue(), msg).queue(m->{}, t -> remove(guildId));
+            lastState.put(guildId, state);
+            editsSent.increment();
+            refreshes.schedule(refresh, refreshDelay(handler));
+        } 
+        catch(Exception e) 
+        {
+            remove(guildId);
         }
-        toRemove.forEach(id -> lastNP.remove(id));
     }
 
     // "event"-based methods
@@ -105,8 +163,8 @@ public class NowplayingHandler
         // update bot status if applicable
         if(bot.getConfig().getSongInStatus())
         {
-            if(track!=null && bot.getJDA().getGuilds().stream().filter(g -> g.getSelfMember().getVoiceState().inVoiceChannel()).count()<=1)
-                bot.getJDA().getPresence().setActivity(Activity.listening(track.getInfo().title));
+            if(track!=null && bot.getGuilds().stream().filter(g -> g.getSelfMember().getVoiceState().inVoiceChannel()).count()<=1)
+                bot.getShards().forEach(shard -> shard.getPresence().setActivity(Activity.listening(track.getInfo().title)));
             else
                 bot.resetGame();
         }
@@ -118,6 +176,6 @@ public class NowplayingHandler
         if(pair==null)
             return;
         if(pair.getValue() == messageId)
-            lastNP.remove(guild.getIdLong());
+            remove(guild.getIdLong());
     }
 }
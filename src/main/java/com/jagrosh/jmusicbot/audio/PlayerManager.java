@@ -17,11 +17,30 @@ package com.jagrosh.jmusicbot.audio;
 
 import com.dunctebot.sourcemanagers.DuncteBotSources;
 import com.jagrosh.jmusicbot.Bot;
+import com.jagrosh.jmusicbot.entities.Pair;
+import com.jagrosh.jmusicbot.utils.OtherUtil;
+import com.sedmelluq.discord.lavaplayer.player.AudioLoadResultHandler;
 import com.sedmelluq.discord.lavaplayer.player.AudioPlayer;
 import com.sedmelluq.discord.lavaplayer.player.DefaultAudioPlayerManager;
+import com.sedmelluq.discord.lavaplayer.source.AudioSourceManager;
 import com.sedmelluq.discord.lavaplayer.source.AudioSourceManagers;
+import com.sedmelluq.discord.lavaplayer.source.ProbingAudioSourceManager;
 import com.sedmelluq.discord.lavaplayer.source.youtube.YoutubeAudioSourceManager;
+import com.sedmelluq.discord.lavaplayer.tools.FriendlyException;
+import com.sedmelluq.discord.lavaplayer.track.AudioPlaylist;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+import com.sedmelluq.discord.lavaplayer.track.playback.NonAllocatingAudioFrameBuffer;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import net.dv8tion.jda.api.entities.Guild;
+import org.slf4j.LoggerFactory;
 
 /**
  *
@@ -30,6 +49,20 @@ import net.dv8tion.jda.api.entities.Guild;
 public class PlayerManager extends DefaultAudioPlayerManager
 {
     private final Bot bot;
+    private final TransitionStats transitionStats = new TransitionStats();
+    private TrackCache trackCache;
+    private final List<SourceGuard> guards = new CopyOnWriteArrayList<>();
+    // loads nobody is waiting on, which only get a few of the loader threads so commands always have some free
+    private final Deque<Pair<String,AudioLoadResultHandler>> backgroundQueue = new ArrayDeque<>();
+    private int backgroundRunning = 0;
+    private final AtomicInteger handlerThreads = new AtomicInteger();
+    // threads shared by every guild's AudioHandler, each of which runs its own work one task at a time
+    private final ExecutorService handlerExecutor = Executors.newCachedThreadPool(r -> 
+    {
+        Thread t = new Thread(r, "audio-handler-" + handlerThreads.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+    });
     
     public PlayerManager(Bot bot)
     {
@@ -38,6 +71,27 @@ public class PlayerManager extends DefaultAudioPlayerManager
     
     public void init()
     {
+        // frames are copied straight into each handler's buffer instead of being allocated one by one
+        getConfiguration().setFrameBufferFactory(NonAllocatingAudioFrameBuffer::new);
+        setItemLoaderThreadPoolSize(Math.max(1, bot.getConfig().getInteractiveLoaders()) + getBackgroundLimit());
+        // the cache has to come first, so it gets a look at every identifier before the network does;
+        // it is there even when nothing is cached, so identical loads are still only done once
+        TrackCacheFile file = null;
+        if(bot.getConfig().getTrackCache() > 0 && bot.getConfig().saveTrackCache())
+        {
+            try
+            {
+                file = new TrackCacheFile(OtherUtil.getPath(TrackCacheFile.CACHE_FILE));
+                file.open();
+            }
+            catch(IOException ex)
+            {
+                LoggerFactory.getLogger("TrackCache").warn("Could not read " + TrackCacheFile.CACHE_FILE + ", the track cache will not be saved: " + ex);
+                file = null;
+            }
+        }
+        trackCache = new TrackCache(this, Math.max(0, bot.getConfig().getTrackCache()), bot.getConfig().getTrackCacheTime(), bot.getConfig().getTrackCacheSearchTime(), file);
+        registerSourceManager(trackCache);
         TransformativeAudioSourceManager.createTransforms(bot.getConfig().getTransforms()).forEach(t -> registerSourceManager(t));
         AudioSourceManagers.registerRemoteSources(this);
         AudioSourceManagers.registerLocalSource(this);
@@ -50,6 +104,199 @@ public class PlayerManager extends DefaultAudioPlayerManager
         return bot;
     }
     
+    public TransitionStats getTransitionStats()
+    {
+        return transitionStats;
+    }
+    
+    public ExecutorService getHandlerExecutor()
+    {
+        return handlerExecutor;
+    }
+    
+    /**
+     * @return the cache of loaded identifiers, which stores nothing if it is disabled
+     */
+    public TrackCache getTrackCache()
+    {
+        return trackCache;
+    }
+    
+    /**
+     * @return the guards in front of every source, in the order they were registered
+     */
+    public List<SourceGuard> getSourceGuards()
+    {
+        return guards;
+    }
+    
+    @Override
+    public void registerSourceManager(AudioSourceManager sourceManager)
+    {
+        // the cache never goes over the network, so only the real sources are
+        // guarded; probing sources (http and local files) are left as they are,
+        // because lavaplayer only passes references that already know their
+        // container format to sources it can tell are probing ones
+        if(sourceManager instanceof TrackCache || sourceManager instanceof ProbingAudioSourceManager)
+        {
+            super.registerSourceManager(sourceManager);
+            return;
+        }
+        SourceGuard guard = new SourceGuard(sourceManager, bot.getConfig().getSourceRateLimit(), bot.getConfig().getSourceFailures());
+        guards.add(guard);
+        super.registerSourceManager(guard);
+    }
+    
+    @Override
+    public <T extends AudioSourceManager> T source(Class<T> klass)
+    {
+        // looks past the guards, so sources can still be found by their own class
+        for(SourceGuard guard: guards)
+            if(klass.isInstance(guard.getSource()))
+                return klass.cast(guard.getSource());
+        return super.source(klass);
+    }
+    
+    /**
+     * Loads an identifier that nobody is waiting on, like the entries of a
+     * playlist. These wait their turn for the background loader threads,
+     * so they never hold up loads from commands.
+     * @param identifier the identifier to load
+     * @param resultHandler the handler for the results
+     */
+    public void loadItemInBackground(String identifier, AudioLoadResultHandler resultHandler)
+    {
+        synchronized(backgroundQueue)
+        {
+            backgroundQueue.add(new Pair<>(identifier, resultHandler));
+        }
+        startBackgroundLoads();
+    }
+    
+    public int getBackgroundRunning()
+    {
+        synchronized(backgroundQueue)
+        {
+            return backgroundRunning;
+        }
+    }
+    
+    public int getBackgroundQueued()
+    {
+        synchronized(backgroundQueue)
+        {
+            return backgroundQueue.size();
+        }
+    }
+    
+    private int getBackgroundLimit()
+    {
+        return Math.max(1, bot.getConfig().getBackgroundLoaders());
+    }
+    
+    private void startBackgroundLoads()
+    {
+        while(true)
+        {
+            Pair<String,AudioLoadResultHandler> load;
+            synchronized(backgroundQueue)
+            {
+                if(backgroundRunning >= getBackgroundLimit() || backgroundQueue.isEmpty())
+                    return;
+                load = backgroundQueue.poll();
+                backgroundRunning++;
+            }
+            loadItem(load.getKey(), new BackgroundLoad(load.getValue()));
+        }
+    }
+    
+    @Override
+    public Future<Void> loadItem(String identifier, AudioLoadResultHandler resultHandler)
+    {
+        return super.loadItem(identifier, trackCache.wrap(identifier, resultHandler));
+    }
+    
+    @Override
+    public Future<Void> loadItemOrdered(Object orderingKey, String identifier, AudioLoadResultHandler resultHandler)
+    {
+        return super.loadItemOrdered(orderingKey, identifier, trackCache.wrap(identifier, resultHandler));
+    }
+    
+    /**
+     * Passes results on, and makes room for the next background load once
+     * this one is done
+     */
+    private class BackgroundLoad implements AudioLoadResultHandler
+    {
+        private final AudioLoadResultHandler handler;
+        
+        private BackgroundLoad(AudioLoadResultHandler handler)
+        {
+            this.handler = handler;
+        }
+        
+        @Override
+        public void trackLoaded(AudioTrack track)
+        {
+            try
+            {
+                handler.trackLoaded(track);
+            }
+            finally
+            {
+                finished();
+            }
+        }
+        
+        @Override
+        public void playlistLoaded(AudioPlaylist playlist)
+        {
+            try
+            {
+                handler.playlistLoaded(playlist);
+            }
+            finally
+            {
+                finished();
+            }
+        }
+        
+        @Override
+        public void noMatches()
+        {
+            try
+            {
+                handler.noMatches();
+            }
+            finally
+            {
+                finished();
+            }
+        }
+        
+        @Override
+        public void loadFailed(FriendlyException ex)
+        {
+            try
+            {
+                handler.loadFailed(ex);
+            }
+            finally
+            {
+                finished();
+            }
+        }
+        
+        private void finished()
+        {
+            synchronized(backgroundQueue)
+            {
+                backgroundRunning--;
+            }
+            startBackgroundLoads();
+        }
+    }
+    
     public boolean hasHandler(Guild guild)
     {
         return guild.getAudioManager().getSendingHandler()!=null;
@@ -0,0 +1,285 @@
+/*
+ * Copyright 2026 John Grosh (john.a.grosh@gmail.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jagrosh.jmusicbot.audio;
+
+import com.sedmelluq.discord.lavaplayer.player.AudioPlayerManager;
+import com.sedmelluq.discord.lavaplayer.source.AudioSourceManager;
+import com.sedmelluq.discord.lavaplayer.tools.FriendlyException;
+import com.sedmelluq.discord.lavaplayer.track.AudioItem;
+import com.sedmelluq.discord.lavaplayer.track.AudioReference;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrackInfo;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sits in front of a source, limiting how often it is loaded from and
+ * stopping loads from it for a while after it fails too many times in a row,
+ * so a site that is down fails right away instead of making every load wait
+ * for it to time out.
+ *
+ * Every source is asked about every identifier, and most of them aren't for
+ * it, so a source is only ever skipped for identifiers that look like ones it
+ * has answered before (the same site, or the same kind of search). Anything
+ * else is still passed to it as usual.
+ *
+ * Tracks keep pointing at the source itself, and this uses the same name, so
+ * encoding and decoding tracks are simply passed on.
+ *
+ * Probing sources (http links and local files) aren't guarded, since
+ * lavaplayer checks for them by class when a reference already knows its
+ * container format, and a guard in front of one would hide it.
+ *
+ * @author John Grosh (john.a.grosh@gmail.com)
+ */
+public class SourceGuard implements AudioSourceManager
+{
+    private final static Logger LOG = LoggerFactory.getLogger(SourceGuard.class);
+    private final static long COOLDOWN = TimeUnit.SECONDS.toMillis(30);
+    private final static int MAX_KEYS = 256;
+    private final AudioSourceManager source;
+    private final int failureLimit;
+    private final double capacity, perMilli; // token bucket, or 0 for no limit
+    private final Set<String> keys = ConcurrentHashMap.newKeySet(); // sites and searches this source has answered
+
+    private boolean paused = false;
+    private int failures = 0; // in a row
+    private long pausedUntil = 0;
+    private boolean trial = false; // a load is testing whether the source is back
+    private double tokens;
+    private long refilled = System.currentTimeMillis();
+    private long loads = 0, rejected = 0;
+
+    /**
+     * @param source the source to guard
+     * @param perMinute how many loads per minute the source gets, or 0 for no limit
+     * @param failureLimit how many loads in a row can fail before the source is paused, or 0 to never pause it
+     */
+    public SourceGuard(AudioSourceManager source, int perMinute, int failureLimit)
+    {
+        this.source = source;
+        this.failureLimit = failureLimit;
+        // bursts of up to ten seconds' worth of loads are let through at once
+        this.capacity = perMinute > 0 ? Math.max(1, perMinute / 6.0) : 0;
+        this.perMilli = perMinute / 60000.0;
+        this.tokens = capacity;
+    }
+
+    public AudioSourceManager getSource()
+    {
+        return source;
+    }
+
+    @Override
+    public String getSourceName()
+    {
+        return source.getSourceName();
+    }
+
+    @Override
+    public AudioItem loadItem(AudioPlayerManager manager, AudioReference reference)
+    {
+        String key = keyOf(reference.identifier);
+        boolean known = key != null && keys.contains(key);
+        boolean testing = allow(known);
+        AudioItem item;
+        try
+        {
+            item = source.loadItem(manager, reference);
+        }
+        catch(FriendlyException ex)
+        {
+            // a common failure is the source working fine and saying no, like for a private video
+            answered(key, ex.severity != FriendlyException.Severity.COMMON, known, testing);
+            throw ex;
+        }
+        catch(RuntimeException ex)
+        {
+            answered(key, true, known, testing);
+            throw ex;
+        }
+        if(item != null)
+            answered(key, false, known, testing);
+        else
+            release(known, testing);
+        return item;
+    }
+
+    /**
+     * Checks whether a load can go ahead, throwing if it can't. If it can, it
+     * takes its token right away, so a burst of loads can't all see the same
+     * token before any of them has used it.
+     * @param known if the identifier looks like one this source answers
+     * @return true if this load is the one testing whether the source is back
+     */
+    private synchronized boolean allow(boolean known)
+    {
+        if(!known)
+            return false;
+        long now = System.currentTimeMillis();
+        refill(now);
+        boolean testing = false;
+        if(paused)
+        {
+            if(now < pausedUntil || trial)
+            {
+                rejected++;
+                throw new Unavailable(String.format("%s is not responding right now, please try again in %d seconds",
+                        getSourceName(), Math.max(1, TimeUnit.MILLISECONDS.toSeconds(pausedUntil - now))));
+            }
+            trial = true;
+            testing = true;
+        }
+        if(capacity > 0 && tokens < 1)
+        {
+            if(testing)
+                trial = false;
+            rejected++;
+            throw new Unavailable(String.format("Too many songs are being loaded from %s, please try again in a moment", getSourceName()));
+        }
+        if(capacity > 0)
+            tokens -= 1;
+        return testing;
+    }
+
+    private synchronized void answered(String key, boolean failed, boolean known, boolean testing)
+    {
+        loads++;
+        // loads that weren't expected didn't take a token up front, but still count against the limit
+        if(capacity > 0 && !known)
+        {
+            refill(System.currentTimeMillis());
+            tokens = Math.max(-capacity, tokens - 1);
+        }
+        if(key != null && keys.size() < MAX_KEYS)
+            keys.add(key);
+        if(testing)
+            trial = false;
+        if(!failed)
+        {
+            if(paused)
+                LOG.info("Source '" + getSourceName() + "' is responding again");
+            failures = 0;
+            paused = false;
+            return;
+        }
+        failures++;
+        if(failureLimit > 0 && (paused || failures >= failureLimit))
+        {
+            if(!paused)
+                LOG.warn("Source '" + getSourceName() + "' failed " + failures + " times in a row, pausing it");
+            paused = true;
+            pausedUntil = System.currentTimeMillis() + COOLDOWN;
+        }
+    }
+
+    /**
+     * Gives back the token of a load that turned out not to be for this source
+     */
+    private synchronized void release(boolean known, boolean testing)
+    {
+        if(capacity > 0 && known)
+            tokens = Math.min(capacity, tokens + 1);
+        if(testing)
+            trial = false;
+    }
+
+    private void refill(long now)
+    {
+        if(capacity <= 0)
+            return;
+        tokens = Math.min(capacity, tokens + (now - refilled) * perMilli);
+        refilled = now;
+    }
+
+    /**
+     * @return a short description of the source's state, for the debug command
+     */
+    public synchronized String getStatus()
+    {
+        String status;
+        if(!paused)
+            status = failures == 0 ? "ok" : failures + " failures";
+        else if(trial)
+            status = "testing";
+        else
+            status = "paused for " + Math.max(0, TimeUnit.MILLISECONDS.toSeconds(pausedUntil - System.currentTimeMillis())) + "s";
+        return status + " (" + loads + " loads, " + rejected + " rejected)";
+    }
+
+    /**
+     * @return the site of a link, or the kind of search, that an identifier is
+     *         for, or null if it is neither
+     */
+    static String keyOf(String identifier)
+    {
+        if(identifier == null)
+            return null;
+        int scheme = identifier.indexOf("://");
+        if(scheme > 0)
+        {
+            int start = scheme + 3;
+            int end = start;
+            while(end < identifier.length() && "/?#".indexOf(identifier.charAt(end)) < 0)
+                end++;
+            return end > start ? identifier.substring(start, end).toLowerCase() : null;
+        }
+        int colon = identifier.indexOf(':');
+        return colon > 0 ? identifier.substring(0, colon + 1).toLowerCase() : null;
+    }
+
+    @Override
+    public boolean isTrackEncodable(AudioTrack track)
+    {
+        return source.isTrackEncodable(track);
+    }
+
+    @Override
+    public void encodeTrack(AudioTrack track, DataOutput output) throws IOException
+    {
+        source.encodeTrack(track, output);
+    }
+
+    @Override
+    public AudioTrack decodeTrack(AudioTrackInfo trackInfo, DataInput input) throws IOException
+    {
+        return source.decodeTrack(trackInfo, input);
+    }
+
+    @Override
+    public void shutdown()
+    {
+        source.shutdown();
+    }
+
+    /**
+     * Thrown instead of loading from a source that is paused or over its limit.
+     * These aren't remembered by the track cache, since they don't last.
+     */
+    public static class Unavailable extends FriendlyException
+    {
+        private Unavailable(String message)
+        {
+            super(message, Severity.COMMON, null);
+        }
+    }
+}
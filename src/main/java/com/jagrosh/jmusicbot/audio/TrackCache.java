@@ -0,0 +1,511 @@
+/*
+ * Copyright 2026 John Grosh (john.a.grosh@gmail.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jagrosh.jmusicbot.audio;
+
+import com.sedmelluq.discord.lavaplayer.player.AudioLoadResultHandler;
+import com.sedmelluq.discord.lavaplayer.player.AudioPlayerManager;
+import com.sedmelluq.discord.lavaplayer.source.AudioSourceManager;
+import com.sedmelluq.discord.lavaplayer.tools.FriendlyException;
+import com.sedmelluq.discord.lavaplayer.tools.io.MessageInput;
+import com.sedmelluq.discord.lavaplayer.tools.io.MessageOutput;
+import com.sedmelluq.discord.lavaplayer.track.AudioItem;
+import com.sedmelluq.discord.lavaplayer.track.AudioPlaylist;
+import com.sedmelluq.discord.lavaplayer.track.AudioReference;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrackInfo;
+import com.sedmelluq.discord.lavaplayer.track.BasicAudioPlaylist;
+import com.sedmelluq.discord.lavaplayer.track.DecodedTrackHolder;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Remembers what identifiers (links and searches) were loaded as, so loading
+ * them again doesn't have to go over the network. Tracks are stored encoded,
+ * so every load gets its own fresh copies of them. Searches (like ytsearch:)
+ * are remembered for a shorter time than links, since their results change
+ * more often.
+ *
+ * This is registered as the first source, which keeps loads in the order they
+ * were requested. It only ever hands out tracks that belong to the other
+ * sources, so it never has to encode or decode tracks of its own.
+ *
+ * Identifiers that found nothing, or failed in an expected way (like a dead
+ * link), are remembered for a short while too, so repeating them fails
+ * right away. That includes searches that found nothing, even when the
+ * results of searches aren't kept at all.
+ *
+ * When an identifier is already being loaded somewhere else, a load waits for
+ * that one to finish and gets copies of its result, instead of going over the
+ * network a second time. This doesn't depend on the result being cached, so it
+ * covers everything, even with a cache size of zero.
+ *
+ * @author John Grosh (john.a.grosh@gmail.com)
+ */
+public class TrackCache implements AudioSourceManager
+{
+    private final static Logger LOG = LoggerFactory.getLogger(TrackCache.class);
+    private final static long LOAD_WAIT = 30; // seconds to wait for someone else's load before loading it again
+    private final static long MISSING_TTL = TimeUnit.MINUTES.toMillis(2);
+    private final AudioPlayerManager manager;
+    private final long ttl, searchTtl; // milliseconds
+    private final Map<String,Entry> entries;
+    private final Map<String,Missing> missing;
+    private final TrackCacheFile file;
+    private final int limit;
+    private final LongAdder hits = new LongAdder(), misses = new LongAdder(), shared = new LongAdder();
+    // identifiers that are being loaded right now, and the ones the current loader thread is loading
+    private final Map<String,Flight> loading = new ConcurrentHashMap<>();
+    private final ThreadLocal<List<String>> leading = ThreadLocal.withInitial(ArrayList::new);
+
+    /**
+     * @param manager the manager that encodes and decodes the tracks
+     * @param size how many identifiers to remember at most, or 0 to only share identical loads
+     * @param minutes how long to remember each link for
+     * @param searchMinutes how long to remember each search for
+     * @param file where to keep the cache on disk, or null to only keep it in memory
+     */
+    public TrackCache(AudioPlayerManager manager, int size, long minutes, long searchMinutes, TrackCacheFile file)
+    {
+        this.manager = manager;
+        this.file = file;
+        this.limit = size;
+        this.ttl = TimeUnit.MINUTES.toMillis(minutes);
+        this.searchTtl = TimeUnit.MINUTES.toMillis(searchMinutes);
+        // least recently used identifiers are forgotten first
+        this.entries = Collections.synchronizedMap(new LinkedHashMap<String,Entry>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String,Entry> eldest)
+            {
+                return size() > size;
+            }
+        });
+        this.missing = Collections.synchronizedMap(new LinkedHashMap<String,Missing>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String,Missing> eldest)
+            {
+                return size() > size;
+            }
+        });
+    }
+
+    public int size()
+    {
+        return entries.size();
+    }
+
+    public long getHits()
+    {
+        return hits.sum();
+    }
+
+    public long getMisses()
+    {
+        return misses.sum();
+    }
+
+    /**
+     * @return how many loads used the result of an identical load that was already running
+     */
+    public long getShared()
+    {
+        return shared.sum();
+    }
+
+    /**
+     * Wraps a result handler so that whatever the identifier loads as is remembered
+     * @param identifier the identifier being loaded
+     * @param handler the handler to pass the results on to
+     * @return the wrapped handler
+     */
+    public AudioLoadResultHandler wrap(String identifier, AudioLoadResultHandler handler)
+    {
+        return new AudioLoadResultHandler()
+        {
+            @Override
+            public void trackLoaded(AudioTrack track)
+            {
+                // stored before the handler gets to change anything about the track
+                store(identifier, Collections.singletonList(track), null, null, false, false);
+                finishLoading(track, null);
+                handler.trackLoaded(track);
+            }
+
+            @Override
+            public void playlistLoaded(AudioPlaylist playlist)
+            {
+                // a search that found nothing is a miss like any other, and is remembered as one
+                if(playlist.isSearchResult() && playlist.getTracks().isEmpty())
+                {
+                    noMatches();
+                    return;
+                }
+                store(identifier, playlist.getTracks(), playlist.getName(), playlist.getSelectedTrack(), playlist.isSearchResult(), true);
+                finishLoading(playlist, null);
+                handler.playlistLoaded(playlist);
+            }
+
+            @Override
+            public void noMatches()
+            {
+                remember(identifier, new Missing(null));
+                finishLoading(AudioReference.NO_TRACK, null);
+                handler.noMatches();
+            }
+
+            @Override
+            public void loadFailed(FriendlyException ex)
+            {
+                // only failures that will happen again, not ones like a site being down for a moment
+                if(ex.severity == FriendlyException.Severity.COMMON && !(ex instanceof SourceGuard.Unavailable))
+                    remember(identifier, new Missing(ex.getMessage()));
+                finishLoading(null, ex);
+                handler.loadFailed(ex);
+            }
+        };
+    }
+
+    private void store(String identifier, List<AudioTrack> tracks, String name, AudioTrack selected, boolean searchResult, boolean playlist)
+    {
+        // a link that led to a search is as short-lived as the search itself
+        long lifetime = searchResult || isSearch(identifier) ? searchTtl : ttl;
+        if(limit <= 0 || lifetime <= 0)
+            return;
+        try
+        {
+            Entry existing = find(identifier);
+            if(existing != null)
+                return;
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            MessageOutput output = new MessageOutput(out);
+            for(AudioTrack track: tracks)
+                manager.encodeTrack(output, track);
+            output.finish();
+            Entry entry = new Entry(out.toByteArray(), name, tracks.indexOf(selected), searchResult, playlist, System.currentTimeMillis() + lifetime);
+            entries.put(identifier, entry);
+            missing.remove(identifier);
+            if(file != null)
+                file.write(identifier, entry);
+        }
+        catch(Exception ex)
+        {
+            // some sources can't encode their tracks, which just means they aren't cached
+            LOG.debug("Could not cache '" + identifier + "': " + ex);
+        }
+    }
+    
+    private void remember(String identifier, Missing m)
+    {
+        // not refreshed by loads it answered itself, so spamming a dead link doesn't keep it dead forever
+        if(limit > 0)
+            missing.putIfAbsent(identifier, m);
+    }
+    
+    /**
+     * Hands the result to everyone waiting on the loads this thread was doing.
+     * Results are handed to the result handler on the same thread that looked
+     * through the sources, so this covers redirects too. This happens before
+     * the handler gets the result, so the copies don't pick up its changes.
+     */
+    private void finishLoading(AudioItem result, FriendlyException failure)
+    {
+        List<String> identifiers = leading.get();
+        for(String identifier: identifiers)
+        {
+            Flight flight = loading.remove(identifier);
+            if(flight != null)
+                flight.finish(result, failure);
+        }
+        identifiers.clear();
+    }
+
+    private Entry find(String identifier) throws IOException
+    {
+        Entry entry = entries.get(identifier);
+        if(entry != null && entry.isExpired())
+        {
+            entries.remove(identifier, entry);
+            entry = null;
+        }
+        // the file is only read when memory doesn't have it, and what is read is kept in memory from then on
+        if(entry == null && file != null)
+        {
+            entry = file.read(identifier);
+            if(entry != null)
+                entries.put(identifier, entry);
+        }
+        return entry;
+    }
+
+    @Override
+    public String getSourceName()
+    {
+        return "cache";
+    }
+
+    @Override
+    public AudioItem loadItem(AudioPlayerManager apm, AudioReference reference)
+    {
+        if(reference.identifier == null)
+            return null;
+        AudioItem item = cached(reference.identifier);
+        if(item != null)
+        {
+            hits.increment();
+        }
+        else
+        {
+            Flight flight = new Flight();
+            Flight running = loading.putIfAbsent(reference.identifier, flight);
+            if(running == null)
+            {
+                // nobody else is loading it, so this thread does, and the others can wait for it
+                leading.get().add(reference.identifier);
+                misses.increment();
+                return null;
+            }
+            if(!running.join() || !running.await())
+            {
+                // it finished just now, or is taking too long, so this one goes ahead on its own
+                loading.remove(reference.identifier, running);
+                misses.increment();
+                return null;
+            }
+            shared.increment();
+            if(running.failure != null)
+                throw new FriendlyException(running.failure.getMessage(), running.failure.severity, running.failure);
+            return running.take();
+        }
+        if(item instanceof Missing)
+        {
+            Missing m = (Missing) item;
+            if(m.message == null)
+                return AudioReference.NO_TRACK;
+            throw new FriendlyException(m.message, FriendlyException.Severity.COMMON, null);
+        }
+        return item;
+    }
+
+    /**
+     * @return the cached tracks or playlist, a {@link Missing} if the identifier
+     *         recently failed to load, or null if nothing is cached for it
+     */
+    private AudioItem cached(String identifier)
+    {
+        Missing m = missing.get(identifier);
+        if(m != null)
+        {
+            if(!m.isExpired())
+                return m;
+            missing.remove(identifier, m);
+        }
+        Entry entry = null;
+        try
+        {
+            entry = find(identifier);
+            if(entry == null)
+                return null;
+            List<AudioTrack> tracks = new ArrayList<>();
+            MessageInput input = new MessageInput(new ByteArrayInputStream(entry.tracks));
+            DecodedTrackHolder holder;
+            while((holder = manager.decodeTrack(input)) != null)
+                if(holder.decodedTrack != null)
+                    tracks.add(holder.decodedTrack);
+            if(!entry.playlist)
+                return tracks.isEmpty() ? null : tracks.get(0);
+            AudioTrack selected = entry.selected >= 0 && entry.selected < tracks.size() ? tracks.get(entry.selected) : null;
+            return new BasicAudioPlaylist(entry.name, tracks, selected, entry.searchResult);
+        }
+        catch(IOException ex)
+        {
+            LOG.warn("Dropping unreadable cache entry for '" + identifier + "': " + ex);
+            if(entry != null)
+                entries.remove(identifier, entry);
+            return null;
+        }
+    }
+
+    @Override
+    public boolean isTrackEncodable(AudioTrack track)
+    {
+        return false;
+    }
+
+    @Override
+    public void encodeTrack(AudioTrack track, DataOutput output) throws IOException
+    {
+        // nothing to write, since every track handed out belongs to another source
+    }
+
+    @Override
+    public AudioTrack decodeTrack(AudioTrackInfo trackInfo, DataInput input) throws IOException
+    {
+        // no track is ever encoded with this as its source, so there is nothing to decode
+        return null;
+    }
+
+    /**
+     * @return true if the identifier is a search rather than a link, which
+     *         are remembered for a shorter time
+     */
+    static boolean isSearch(String identifier)
+    {
+        if(identifier == null || identifier.contains("://"))
+            return false;
+        int colon = identifier.indexOf(':');
+        return colon > 0 && identifier.substring(0, colon).toLowerCase().endsWith("search");
+    }
+
+    @Override
+    public void shutdown()
+    {
+        entries.clear();
+        missing.clear();
+    }
+
+    static class Entry
+    {
+        final byte[] tracks;
+        final String name;
+        final int selected;
+        final boolean searchResult, playlist;
+        final long expires;
+
+        Entry(byte[] tracks, String name, int selected, boolean searchResult, boolean playlist, long expires)
+        {
+            this.tracks = tracks;
+            this.name = name;
+            this.selected = selected;
+            this.searchResult = searchResult;
+            this.playlist = playlist;
+            this.expires = expires;
+        }
+
+        private boolean isExpired()
+        {
+            return System.currentTimeMillis() > expires;
+        }
+    }
+
+    /**
+     * A load that is running right now, which identical loads can wait on to
+     * get a copy of its result
+     */
+    private static class Flight
+    {
+        private final CountDownLatch done = new CountDownLatch(1);
+        private final List<AudioItem> copies = new ArrayList<>();
+        private int waiting = 0;
+        private boolean finished = false;
+        private FriendlyException failure;
+
+        /**
+         * @return false if the load already finished, so there is nothing to wait for
+         */
+        private synchronized boolean join()
+        {
+            if(finished)
+                return false;
+            waiting++;
+            return true;
+        }
+
+        /**
+         * @return true if the load finished in time
+         */
+        private boolean await()
+        {
+            try
+            {
+                return done.await(LOAD_WAIT, TimeUnit.SECONDS);
+            }
+            catch(InterruptedException ex)
+            {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+
+        private synchronized void finish(AudioItem result, FriendlyException failure)
+        {
+            finished = true;
+            this.failure = failure;
+            // each waiting load gets its own tracks, cloned before the first handler sees them
+            if(result != null)
+                for(int i = 0; i < waiting; i++)
+                    copies.add(copy(result));
+            done.countDown();
+        }
+
+        private synchronized AudioItem take()
+        {
+            return copies.isEmpty() ? null : copies.remove(copies.size() - 1);
+        }
+
+        private static AudioItem copy(AudioItem item)
+        {
+            if(item instanceof AudioTrack)
+                return ((AudioTrack) item).makeClone();
+            if(!(item instanceof AudioPlaylist))
+                return item;
+            AudioPlaylist playlist = (AudioPlaylist) item;
+            List<AudioTrack> tracks = new ArrayList<>(playlist.getTracks().size());
+            AudioTrack selected = null;
+            for(AudioTrack track: playlist.getTracks())
+            {
+                AudioTrack clone = track.makeClone();
+                if(track == playlist.getSelectedTrack())
+                    selected = clone;
+                tracks.add(clone);
+            }
+            return new BasicAudioPlaylist(playlist.getName(), tracks, selected, playlist.isSearchResult());
+        }
+    }
+
+    /**
+     * An identifier that recently found nothing, or failed with the given message
+     */
+    private static class Missing implements AudioItem
+    {
+        private final String message;
+        private final long expires = System.currentTimeMillis() + MISSING_TTL;
+
+        private Missing(String message)
+        {
+            this.message = message;
+        }
+
+        private boolean isExpired()
+        {
+            return System.currentTimeMillis() > expires;
+        }
+    }
+}
@@ -0,0 +1,344 @@
+/*
+ * Copyright 2026 John Grosh (john.a.grosh@gmail.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jagrosh.jmusicbot.audio;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps cached tracks on disk, so the cache survives restarts. Entries are
+ * appended to one file as length-prefixed records, and only where each
+ * identifier's latest record is (and when it expires) is kept in memory.
+ * Once most of the file is expired or replaced records, it is compacted in
+ * the background.
+ *
+ * @author John Grosh (john.a.grosh@gmail.com)
+ */
+public class TrackCacheFile
+{
+    public final static String CACHE_FILE = "trackcache.bin";
+    private final static long COMPACT_MIN = 1 << 20; // bytes
+    private final Path path;
+    private final Map<String,Record> records = new HashMap<>();
+    private long size = 0; // where the next record will be appended
+    private long live = 0; // how much of the file is taken up by current records
+    private boolean compacting = false;
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(r -> 
+    {
+        Thread t = new Thread(r, "track-cache-compactor");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public TrackCacheFile(Path path)
+    {
+        this.path = path;
+    }
+
+    /**
+     * Reads through the file, remembering where the latest record of each
+     * identifier is, and compacts it if needed
+     * @throws IOException if the file could not be read
+     */
+    public synchronized void open() throws IOException
+    {
+        records.clear();
+        size = 0;
+        live = 0;
+        if(!Files.exists(path))
+            return;
+        long now = System.currentTimeMillis();
+        long fileSize = Files.size(path);
+        try(DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path))))
+        {
+            // stop at the first record that doesn't fit in the file or can't be read,
+            // which is where a crash cut off a write
+            while(size + 4 <= fileSize)
+            {
+                int length = in.readInt();
+                if(length < 0 || size + 4 + length > fileSize)
+                    break;
+                byte[] record = new byte[length];
+                in.readFully(record);
+                String identifier;
+                long expires;
+                try
+                {
+                    DataInputStream header = new DataInputStream(new ByteArrayInputStream(record));
+                    identifier = header.readUTF();
+                    expires = header.readLong();
+                }
+                catch(IOException ex)
+                {
+                    break;
+                }
+                remove(identifier);
+                if(expires > now)
+                {
+                    records.put(identifier, new Record(size + 4, length, expires));
+                    live += 4 + length;
+                }
+                size += 4 + length;
+            }
+        }
+        // cut off whatever is left after the last good record, so new records
+        // are appended right after it
+        if(size < fileSize)
+        {
+            LoggerFactory.getLogger("TrackCache").warn("Dropping " + (fileSize - size) + " damaged bytes at the end of " + CACHE_FILE);
+            try(FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE))
+            {
+                channel.truncate(size);
+            }
+        }
+        if(size > COMPACT_MIN && live * 2 < size)
+            compactInBackground();
+        LoggerFactory.getLogger("TrackCache").info("Loaded " + records.size() + " cached tracks from " + path.toAbsolutePath());
+    }
+
+    /**
+     * @param identifier the identifier to look up
+     * @return the cached entry, or null if there is none or it has expired
+     * @throws IOException if the file could not be read
+     */
+    public synchronized TrackCache.Entry read(String identifier) throws IOException
+    {
+        Record record = records.get(identifier);
+        if(record == null)
+            return null;
+        if(record.expires <= System.currentTimeMillis())
+        {
+            remove(identifier);
+            return null;
+        }
+        byte[] bytes;
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+        {
+            bytes = read(channel, record);
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        in.readUTF();
+        long expires = in.readLong();
+        boolean playlist = in.readBoolean();
+        boolean searchResult = in.readBoolean();
+        int selected = in.readInt();
+        String name = in.readBoolean() ? in.readUTF() : null;
+        byte[] tracks = new byte[in.readInt()];
+        in.readFully(tracks);
+        return new TrackCache.Entry(tracks, name, selected, searchResult, playlist, expires);
+    }
+
+    /**
+     * Appends an entry, replacing whatever was stored for the identifier before
+     * @param identifier the identifier the entry was loaded from
+     * @param entry the entry to store
+     * @throws IOException if the file could not be written
+     */
+    public synchronized void write(String identifier, TrackCache.Entry entry) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0); // filled in below, once the length is known
+        out.writeUTF(identifier);
+        out.writeLong(entry.expires);
+        out.writeBoolean(entry.playlist);
+        out.writeBoolean(entry.searchResult);
+        out.writeInt(entry.selected);
+        out.writeBoolean(entry.name != null);
+        if(entry.name != null)
+            out.writeUTF(entry.name);
+        out.writeInt(entry.tracks.length);
+        out.write(entry.tracks);
+        byte[] record = bytes.toByteArray();
+        ByteBuffer.wrap(record).putInt(record.length - 4);
+
+        long position;
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE))
+        {
+            // anything past the last record is left over from a failed write
+            if(channel.size() > size)
+                channel.truncate(size);
+            position = channel.size();
+            ByteBuffer buffer = ByteBuffer.wrap(record);
+            try
+            {
+                while(buffer.hasRemaining())
+                    channel.write(buffer, position + buffer.position());
+            }
+            catch(IOException ex)
+            {
+                try
+                {
+                    channel.truncate(position);
+                }
+                catch(IOException ignore) {}
+                throw ex;
+            }
+        }
+        remove(identifier);
+        records.put(identifier, new Record(position + 4, record.length - 4, entry.expires));
+        size = position + record.length;
+        live += record.length;
+        if(size > COMPACT_MIN && live * 2 < size)
+            compactInBackground();
+    }
+
+    private void remove(String identifier)
+    {
+        Record old = records.remove(identifier);
+        if(old != null)
+            live -= 4 + old.length;
+    }
+
+    private void compactInBackground()
+    {
+        if(compacting)
+            return;
+        compacting = true;
+        compactor.execute(() -> 
+        {
+            try
+            {
+                compact();
+            }
+            catch(IOException ex)
+            {
+                LoggerFactory.getLogger("TrackCache").warn("Failed to compact " + CACHE_FILE + ": " + ex);
+            }
+            finally
+            {
+                synchronized(this)
+                {
+                    compacting = false;
+                }
+            }
+        });
+    }
+
+    /**
+     * Copies every record that is still current into a new file, which then
+     * replaces the old one. Most of the copying happens without holding the
+     * lock, from a snapshot of the records; only what was written in the
+     * meantime is copied once the lock is taken again.
+     */
+    private void compact() throws IOException
+    {
+        Map<String,Record> snapshot;
+        long end;
+        synchronized(this)
+        {
+            snapshot = new HashMap<>(records);
+            end = size;
+        }
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        Map<Record,Long> moved = new IdentityHashMap<>(); // record in the old file -> offset in the new one
+        long position = 0;
+        long now = System.currentTimeMillis();
+        // records are only ever appended, so the ones in the snapshot stay
+        // where they are while new ones are written
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp))))
+        {
+            for(Record record: snapshot.values())
+            {
+                if(record.expires <= now)
+                    continue;
+                out.writeInt(record.length);
+                out.write(read(channel, record));
+                moved.put(record, position + 4);
+                position += 4 + record.length;
+            }
+        }
+        synchronized(this)
+        {
+            Map<String,Record> compacted = new HashMap<>();
+            try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+                    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp, StandardOpenOption.APPEND))))
+            {
+                for(Map.Entry<String,Record> entry: records.entrySet())
+                {
+                    Record record = entry.getValue();
+                    Long offset = moved.get(record);
+                    if(offset == null)
+                    {
+                        // anything before the snapshot's end that wasn't copied has expired
+                        if(record.offset < end || record.expires <= now)
+                            continue;
+                        out.writeInt(record.length);
+                        out.write(read(channel, record));
+                        offset = position + 4;
+                        position += 4 + record.length;
+                    }
+                    compacted.put(entry.getKey(), new Record(offset, record.length, record.expires));
+                }
+            }
+            try
+            {
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            catch(AtomicMoveNotSupportedException ex)
+            {
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+            records.clear();
+            records.putAll(compacted);
+            size = position;
+            live = position;
+        }
+    }
+
+    private static byte[] read(FileChannel channel, Record record) throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(record.length);
+        while(buffer.hasRemaining())
+            if(channel.read(buffer, record.offset + buffer.position()) < 0)
+                throw new EOFException("Unexpected end of " + CACHE_FILE);
+        return buffer.array();
+    }
+
+    private static class Record
+    {
+        private final long offset; // where the record starts, after its length
+        private final int length;
+        private final long expires;
+
+        private Record(long offset, int length, long expires)
+        {
+            this.offset = offset;
+            this.length = length;
+            this.expires = expires;
+        }
+    }
+}
@@ -15,18 +15,32 @@
  */
 package com.jagrosh.jmusicbot.audio;
 
+import com.jagrosh.jmusicbot.entities.Pair;
 import com.sedmelluq.discord.lavaplayer.player.AudioPlayerManager;
 import com.sedmelluq.discord.lavaplayer.source.youtube.YoutubeAudioSourceManager;
 import com.sedmelluq.discord.lavaplayer.track.AudioItem;
 import com.sedmelluq.discord.lavaplayer.track.AudioReference;
 import com.typesafe.config.Config;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 import java.util.stream.Collectors;
+import org.jsoup.Connection;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.parser.Parser;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -37,20 +51,57 @@ import org.slf4j.LoggerFactory;
 public class TransformativeAudioSourceManager extends YoutubeAudioSourceManager
 {
     private final static Logger log = LoggerFactory.getLogger(TransformativeAudioSourceManager.class);
+    private final static int VALUE_CACHE_SIZE = 500;
+    private final static long VALUE_CACHE_TIME = TimeUnit.MINUTES.toMillis(10);
+    private final static int DEFAULT_MAX_BYTES = 2 * 1024 * 1024;
+    private final static int DEFAULT_TIMEOUT = 10; // seconds
+    private final static int FIRST_PARSE = 16 * 1024; // bytes read before the page is first looked at
     private final String name, regex, replacement, selector, format;
+    private final int maxBytes, timeout;
+    private final Pattern pattern;
+    private final String prefix; // every identifier the pattern matches starts with this
+    private final Map<String,Pair<String,Long>> values; // url -> value found on the page, when it expires
     
     public TransformativeAudioSourceManager(String name, Config object)
     {
-        this(name, object.getString("regex"), object.getString("replacement"), object.getString("selector"), object.getString("format"));
+        this(name, object.getString("regex"), object.getString("replacement"), object.getString("selector"), object.getString("format"),
+                object.hasPath("maxbytes") ? object.getInt("maxbytes") : DEFAULT_MAX_BYTES,
+                object.hasPath("timeout") ? object.getInt("timeout") : DEFAULT_TIMEOUT);
     }
     
     public TransformativeAudioSourceManager(String name, String regex, String replacement, String selector, String format)
+    {
+        this(name, regex, replacement, selector, format, DEFAULT_MAX_BYTES, DEFAULT_TIMEOUT);
+    }
+    
+    public TransformativeAudioSourceManager(String name, String regex, String replacement, String selector, String format, int maxBytes, int timeout)
     {
         this.name = name;
         this.regex = regex;
         this.replacement = replacement;
         this.selector = selector;
         this.format = format;
+        this.maxBytes = maxBytes;
+        this.timeout = timeout;
+        Pattern compiled = null;
+        try
+        {
+            compiled = Pattern.compile(regex);
+        }
+        catch (PatternSyntaxException ex)
+        {
+            log.info(String.format("Invalid pattern syntax '%s' in source '%s'", regex, name));
+        }
+        this.pattern = compiled;
+        this.prefix = literalPrefix(regex);
+        this.values = Collections.synchronizedMap(new LinkedHashMap<String,Pair<String,Long>>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String,Pair<String,Long>> eldest)
+            {
+                return size() > VALUE_CACHE_SIZE;
+            }
+        });
     }
 
     @Override
@@ -62,20 +113,18 @@ public class TransformativeAudioSourceManager extends YoutubeAudioSourceManager
     @Override
     public AudioItem loadItem(AudioPlayerManager apm, AudioReference ar)
     {
-        if(ar.identifier == null || !ar.identifier.matches(regex))
+        // most identifiers aren't meant for this source, and can be ruled out without the regex
+        if(pattern == null || ar.identifier == null || !ar.identifier.startsWith(prefix))
+            return null;
+        Matcher matcher = pattern.matcher(ar.identifier);
+        if(!matcher.matches())
             return null;
         try
         {
-            String url = ar.identifier.replaceAll(regex, replacement);
-            Document doc = Jsoup.connect(url).get();
-            String value = doc.selectFirst(selector).ownText();
-            String formattedValue = String.format(format, value);
+            String url = matcher.replaceAll(replacement);
+            String formattedValue = String.format(format, getValue(url));
             return super.loadItem(apm, new AudioReference(formattedValue, null));
         }
-        catch (PatternSyntaxException ex)
-        {
-            log.info(String.format("Invalid pattern syntax '%s' in source '%s'", regex, name));
-        }
         catch (IOException ex)
         {
             log.warn(String.format("Failed to resolve URL in source '%s': ", name), ex);
@@ -87,6 +136,128 @@ public class TransformativeAudioSourceManager extends YoutubeAudioSourceManager
         return null;
     }
     
+    /**
+     * Fetches the page and picks the value out of it, or uses the value from
+     * the last time the page was fetched, if that wasn't long ago
+     */
+    private String getValue(String url) throws IOException
+    {
+        Pair<String,Long> cached = values.get(url);
+        if(cached != null && cached.getValue() > System.currentTimeMillis())
+            return cached.getKey();
+        String value = fetchValue(url);
+        values.put(url, new Pair<>(value, System.currentTimeMillis() + VALUE_CACHE_TIME));
+        return value;
+    }
+    
+    /**
+     * Reads the page a piece at a time, and stops as soon as the part read so
+     * far contains the whole element the selector points to, so the rest of a
+     * big page is never downloaded or parsed
+     */
+    private String fetchValue(String url) throws IOException
+    {
+        Connection.Response response = Jsoup.connect(url)
+                .timeout((int) TimeUnit.SECONDS.toMillis(timeout))
+                .maxBodySize(maxBytes)
+                .execute();
+        Charset charset = response.charset() == null || !Charset.isSupported(response.charset())
+                ? StandardCharsets.UTF_8 : Charset.forName(response.charset());
+        ByteArrayOutputStream page = new ByteArrayOutputStream(FIRST_PARSE);
+        byte[] buffer = new byte[8192];
+        int parseAt = FIRST_PARSE;
+        try(InputStream in = response.bodyStream())
+        {
+            int read;
+            // maxBodySize already ends the stream at the byte cap
+            while((read = in.read(buffer)) != -1)
+            {
+                page.write(buffer, 0, read);
+                if(page.size() >= parseAt)
+                {
+                    String value = findValue(new String(page.toByteArray(), charset), url, false);
+                    if(value != null)
+                        return value;
+                    parseAt *= 2;
+                }
+            }
+        }
+        String value = findValue(new String(page.toByteArray(), charset), url, true);
+        if(value == null)
+            throw new IOException("Nothing matching '" + selector + "' was found on " + url);
+        return value;
+    }
+    
+    /**
+     * @param complete false if more of the page might follow
+     * @return the text of the selected element, or null if it isn't there or
+     *         might still be missing some of its text
+     */
+    private String findValue(String html, String url, boolean complete)
+    {
+        Document doc = Jsoup.parse(html, url, Parser.htmlParser().setTrackPosition(true));
+        Element element = doc.selectFirst(selector);
+        if(element == null || !(complete || isClosed(doc, element)))
+            return null;
+        return element.ownText();
+    }
+    
+    /**
+     * An element is finished once its closing tag has been read, or once
+     * anything after it has been, since then the parser has moved past it
+     */
+    private static boolean isClosed(Document doc, Element element)
+    {
+        if(element.endSourceRange().isTracked())
+            return true;
+        Node last = doc;
+        while(last.childNodeSize() > 0)
+            last = last.childNode(last.childNodeSize() - 1);
+        for(Node node = last; node != null; node = node.parentNode())
+            if(node == element)
+                return false;
+        return true;
+    }
+    
+    /**
+     * Finds the plain text that every match of the regex has to start with,
+     * which is everything up to the first special character
+     */
+    static String literalPrefix(String regex)
+    {
+        // with alternatives, a match doesn't have to start with the first one
+        for(int i = 0; i < regex.length(); i++)
+        {
+            if(regex.charAt(i) == '\\')
+                i++;
+            else if(regex.charAt(i) == '|')
+                return "";
+        }
+        StringBuilder sb = new StringBuilder();
+        for(int i = regex.startsWith("^") ? 1 : 0; i < regex.length(); i++)
+        {
+            char c = regex.charAt(i);
+            int length = 1;
+            if(c == '\\')
+            {
+                // escaped punctuation is plain text, but things like \d or \Q are not
+                if(i + 1 >= regex.length() || Character.isLetterOrDigit(regex.charAt(i + 1)))
+                    break;
+                c = regex.charAt(i + 1);
+                length = 2;
+            }
+            else if(".[]{}()*+?^$|".indexOf(c) >= 0)
+                break;
+            // a quantifier after this character means it might not be there at all
+            int after = i + length;
+            if(after < regex.length() && "?*{".indexOf(regex.charAt(after)) >= 0)
+                break;
+            sb.append(c);
+            i = after - 1;
+        }
+        return sb.toString();
+    }
+    
     public static List<TransformativeAudioSourceManager> createTransforms(Config transforms)
     {
         try
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2026 John Grosh <john.a.grosh@gmail.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jagrosh.jmusicbot.audio;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps track of the silence between one track ending and the first frame
+ * of the next track, across all guilds.
+ *
+ * @author John Grosh <john.a.grosh@gmail.com>
+ */
+public class TransitionStats
+{
+    private final LongAdder transitions = new LongAdder();
+    private final LongAdder preloaded = new LongAdder();
+    private final LongAdder totalGap = new LongAdder();
+    private final AtomicLong maxGap = new AtomicLong();
+
+    public void record(long gapMillis, boolean wasPreloaded)
+    {
+        transitions.increment();
+        if(wasPreloaded)
+            preloaded.increment();
+        totalGap.add(gapMillis);
+        maxGap.accumulateAndGet(gapMillis, Math::max);
+    }
+
+    public long getTransitions()
+    {
+        return transitions.sum();
+    }
+
+    public long getPreloaded()
+    {
+        return preloaded.sum();
+    }
+
+    public long getAverageGap()
+    {
+        long count = transitions.sum();
+        return count == 0 ? 0 : totalGap.sum() / count;
+    }
+
+    public long getMaxGap()
+    {
+        return maxGap.get();
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2026 John Grosh <john.a.grosh@gmail.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jagrosh.jmusicbot.audio;
+
+import java.util.Arrays;
+
+/**
+ * The skip votes for the current track. Voters are kept in an open-addressing
+ * set of user ids, and the number of voters that are still in the bot's voice
+ * channel is kept up to date from voice events, so a vote never has to look
+ * at the channel's members.
+ *
+ * @author John Grosh (john.a.grosh@gmail.com)
+ */
+public class VoteTracker
+{
+    private final static long EMPTY = 0L; // user ids are never 0
+    private long[] voters = new long[16];
+    private boolean[] present = new boolean[16];
+    private int size = 0;
+    private int presentCount = 0;
+
+    /**
+     * Adds a vote from someone who is in the bot's voice channel
+     * @param userId the voter
+     * @return false if they had already voted
+     */
+    public boolean add(long userId)
+    {
+        int slot = slot(voters, userId);
+        if(voters[slot] == userId)
+            return false;
+        voters[slot] = userId;
+        present[slot] = true;
+        size++;
+        presentCount++;
+        if(size * 2 > voters.length)
+            grow();
+        return true;
+    }
+
+    public boolean contains(long userId)
+    {
+        return voters[slot(voters, userId)] == userId;
+    }
+
+    /**
+     * Keeps track of whether a voter is in the bot's voice channel
+     * @param userId the user that joined or left the channel
+     * @param inChannel true if they joined it
+     */
+    public void setPresent(long userId, boolean inChannel)
+    {
+        int slot = slot(voters, userId);
+        if(voters[slot] != userId || present[slot] == inChannel)
+            return;
+        present[slot] = inChannel;
+        presentCount += inChannel ? 1 : -1;
+    }
+
+    /**
+     * @return how many voters are in the bot's voice channel
+     */
+    public int getVotes()
+    {
+        return presentCount;
+    }
+
+    public void clear()
+    {
+        if(size == 0)
+            return;
+        Arrays.fill(voters, EMPTY);
+        Arrays.fill(present, false);
+        size = 0;
+        presentCount = 0;
+    }
+
+    private void grow()
+    {
+        long[] oldVoters = voters;
+        boolean[] oldPresent = present;
+        voters = new long[oldVoters.length * 2];
+        present = new boolean[voters.length];
+        for(int i = 0; i < oldVoters.length; i++)
+        {
+            if(oldVoters[i] == EMPTY)
+                continue;
+            int slot = slot(voters, oldVoters[i]);
+            voters[slot] = oldVoters[i];
+            present[slot] = oldPresent[i];
+        }
+    }
+
+    /**
+     * @return the slot holding the id, or the empty slot where it would go
+     */
+    private static int slot(long[] table, long userId)
+    {
+        // the low bits of a snowflake are mostly a counter, so mix them before picking a slot
+        long hash = userId * 0x9E3779B97F4A7C15L;
+        int mask = table.length - 1;
+        int slot = (int)(hash ^ (hash >>> 32)) & mask;
+        while(table[slot] != EMPTY && table[slot] != userId)
+            slot = (slot + 1) & mask;
+        return slot;
+    }
+}
@@ -56,8 +56,8 @@ public abstract class MusicCommand extends Command
             event.replyInDm(event.getClient().getError()+" You can only use that command in "+tchannel.getAsMention()+"!");
             return;
         }
-        bot.getPlayerManager().setUpHandler(event.getGuild()); // no point constantly checking for this later
-        if(bePlaying && !((AudioHandler)event.getGuild().getAudioManager().getSendingHandler()).isMusicPlaying(event.getJDA()))
+        AudioHandler handler = bot.getPlayerManager().setUpHandler(event.getGuild()); // no point constantly checking for this later
+        if(bePlaying && !handler.isMusicPlaying(event.getJDA()))
         {
             event.reply(event.getClient().getError()+" There must be music playing to use that!");
             return;
@@ -96,7 +96,8 @@ public abstract class MusicCommand extends Command
             }
         }
         
-        doCommand(event);
+        // commands for the same guild run one at a time, on that guild's audio thread
+        handler.submit(() -> doCommand(event));
     }
     
     public abstract void doCommand(CommandEvent event);
@@ -35,9 +35,11 @@ import net.dv8tion.jda.api.entities.VoiceChannel;
 public class SettingsCmd extends Command 
 {
     private final static String EMOJI = "\uD83C\uDFA7"; // 🎧
+    private final Bot bot;
     
     public SettingsCmd(Bot bot)
     {
+        this.bot = bot;
         this.name = "settings";
         this.help = "shows the bots settings";
         this.aliases = bot.getConfig().getAliases(this.name);
@@ -69,8 +71,8 @@ public class SettingsCmd extends Command
                                                 : "**"+s.getQueueType().getUserFriendlyName()+"**")
                         + "\nDefault Playlist: " + (s.getDefaultPlaylist() == null ? "None" : "**" + s.getDefaultPlaylist() + "**")
                         )
-                .setFooter(event.getJDA().getGuilds().size() + " servers | "
-                        + event.getJDA().getGuilds().stream().filter(g -> g.getSelfMember().getVoiceState().inVoiceChannel()).count()
+                .setFooter(bot.getGuilds().size() + " servers | "
+                        + bot.getGuilds().stream().filter(g -> g.getSelfMember().getVoiceState().inVoiceChannel()).count()
                         + " audio connections", null);
         event.getChannel().sendMessage(builder.setEmbeds(ebuilder.build()).build()).queue();
     }
@@ -54,18 +54,13 @@ public class SkipCmd extends MusicCommand
         }
         else
         {
-            int listeners = (int)event.getSelfMember().getVoiceState().getChannel().getMembers().stream()
-                    .filter(m -> !m.getUser().isBot() && !m.getVoiceState().isDeafened()).count();
+            int listeners = bot.getAloneInVoiceHandler().getListeners(event.getGuild());
             String msg;
-            if(handler.getVotes().contains(event.getAuthor().getId()))
-                msg = event.getClient().getWarning()+" You already voted to skip this song `[";
-            else
-            {
+            if(handler.getVotes().add(event.getAuthor().getIdLong()))
                 msg = event.getClient().getSuccess()+" You voted to skip the song `[";
-                handler.getVotes().add(event.getAuthor().getId());
-            }
-            int skippers = (int)event.getSelfMember().getVoiceState().getChannel().getMembers().stream()
-                    .filter(m -> handler.getVotes().contains(m.getUser().getId())).count();
+            else
+                msg = event.getClient().getWarning()+" You already voted to skip this song `[";
+            int skippers = handler.getVotes().getVotes();
             int required = (int)Math.ceil(listeners * skipRatio);
             msg += skippers + " votes, " + required + "/" + listeners + " needed]`";
             if(skippers>=required)
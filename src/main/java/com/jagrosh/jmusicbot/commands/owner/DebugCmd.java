@@ -18,7 +18,11 @@ package com.jagrosh.jmusicbot.commands.owner;
 import com.jagrosh.jdautilities.command.CommandEvent;
 import com.jagrosh.jdautilities.commons.JDAUtilitiesInfo;
 import com.jagrosh.jmusicbot.Bot;
+import com.jagrosh.jmusicbot.audio.SourceGuard;
+import com.jagrosh.jmusicbot.audio.TrackCache;
+import com.jagrosh.jmusicbot.audio.TransitionStats;
 import com.jagrosh.jmusicbot.commands.OwnerCommand;
+import com.jagrosh.jmusicbot.playlist.PlaylistLoader;
 import com.jagrosh.jmusicbot.utils.OtherUtil;
 import com.sedmelluq.discord.lavaplayer.tools.PlayerLibrary;
 import net.dv8tion.jda.api.JDAInfo;
@@ -61,6 +65,10 @@ public class DebugCmd extends OwnerCommand
                 .append("\n  NPImages = ").append(bot.getConfig().useNPImages())
                 .append("\n  SongInStatus = ").append(bot.getConfig().getSongInStatus())
                 .append("\n  StayInChannel = ").append(bot.getConfig().getStay())
+                .append("\n  PreloadSeconds = ").append(bot.getConfig().getPreloadSeconds())
+                .append("\n  PlaylistConcurrency = ").append(bot.getConfig().getPlaylistConcurrency())
+                .append("\n  Loaders = ").append(bot.getConfig().getInteractiveLoaders()).append(" interactive, ")
+                        .append(bot.getConfig().getBackgroundLoaders()).append(" background")
                 .append("\n  UseEval = ").append(bot.getConfig().useEval())
                 .append("\n  UpdateAlerts = ").append(bot.getConfig().useUpdateAlerts());
         sb.append("\n\nDependency Information:")
@@ -72,10 +80,32 @@ public class DebugCmd extends OwnerCommand
         sb.append("\n\nRuntime Information:")
                 .append("\n  Total Memory = ").append(total)
                 .append("\n  Used Memory = ").append(used);
+        TransitionStats transitions = bot.getPlayerManager().getTransitionStats();
+        sb.append("\n\nPlayback Information:")
+                .append("\n  Transitions = ").append(transitions.getTransitions())
+                .append("\n  Preloaded Transitions = ").append(transitions.getPreloaded())
+                .append("\n  Average Gap = ").append(transitions.getAverageGap()).append("ms")
+                .append("\n  Max Gap = ").append(transitions.getMaxGap()).append("ms")
+                .append("\n  Scheduled Now Playing Refreshes = ").append(bot.getNowplayingHandler().getScheduledRefreshes())
+                .append("\n  Now Playing Edits = ").append(bot.getNowplayingHandler().getEditsSent())
+                .append("\n  Skipped Now Playing Edits = ").append(bot.getNowplayingHandler().getEditsSkipped());
+        PlaylistLoader playlists = bot.getPlaylistLoader();
+        sb.append("\n  Playlists Loaded = ").append(playlists.getPlaylistsLoaded())
+                .append(" (").append(playlists.getItemsLoaded()).append(" items in ").append(playlists.getLoadTime()).append("ms)");
+        sb.append("\n  Background Loads = ").append(bot.getPlayerManager().getBackgroundRunning())
+                .append(" (").append(bot.getPlayerManager().getBackgroundQueued()).append(" waiting)");
+        sb.append("\n  Default Playlists Started = ").append(bot.getDefaultPlaylistStarter().getProgress());
+        TrackCache cache = bot.getPlayerManager().getTrackCache();
+        sb.append("\n  Track Cache = ").append(cache.size())
+                .append(" (").append(cache.getHits()).append(" hits, ").append(cache.getMisses()).append(" misses, ")
+                .append(cache.getShared()).append(" shared loads)");
+        for(SourceGuard guard: bot.getPlayerManager().getSourceGuards())
+            sb.append("\n  Source ").append(guard.getSourceName()).append(" = ").append(guard.getStatus());
         sb.append("\n\nDiscord Information:")
                 .append("\n  ID = ").append(event.getJDA().getSelfUser().getId())
-                .append("\n  Guilds = ").append(event.getJDA().getGuildCache().size())
-                .append("\n  Users = ").append(event.getJDA().getUserCache().size());
+                .append("\n  Shards = ").append(bot.getShards().size())
+                .append("\n  Guilds = ").append(bot.getGuilds().size())
+                .append("\n  Users = ").append(bot.getShards().stream().mapToLong(shard -> shard.getUserCache().size()).sum());
         sb.append("\n```");
         
         if(event.isFromType(ChannelType.PRIVATE) 
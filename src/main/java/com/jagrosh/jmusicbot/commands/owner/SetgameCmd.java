@@ -18,6 +18,7 @@ package com.jagrosh.jmusicbot.commands.owner;
 import com.jagrosh.jdautilities.command.CommandEvent;
 import com.jagrosh.jmusicbot.Bot;
 import com.jagrosh.jmusicbot.commands.OwnerCommand;
+import net.dv8tion.jda.api.JDA;
 import net.dv8tion.jda.api.entities.Activity;
 
 /**
@@ -26,8 +27,11 @@ import net.dv8tion.jda.api.entities.Activity;
  */
 public class SetgameCmd extends OwnerCommand
 {
+    private final Bot bot;
+    
     public SetgameCmd(Bot bot)
     {
+        this.bot = bot;
         this.name = "setgame";
         this.help = "sets the game the bot is playing";
         this.arguments = "[action] [game]";
@@ -46,7 +50,7 @@ public class SetgameCmd extends OwnerCommand
         String title = event.getArgs().toLowerCase().startsWith("playing") ? event.getArgs().substring(7).trim() : event.getArgs();
         try
         {
-            event.getJDA().getPresence().setActivity(title.isEmpty() ? null : Activity.playing(title));
+            setActivity(title.isEmpty() ? null : Activity.playing(title));
             event.reply(event.getClient().getSuccess()+" **"+event.getSelfUser().getName()
                     +"** is "+(title.isEmpty() ? "no longer playing anything." : "now playing `"+title+"`"));
         }
@@ -56,6 +60,13 @@ public class SetgameCmd extends OwnerCommand
         }
     }
     
+    // every shard has its own presence, so each one has to be told
+    private void setActivity(Activity activity)
+    {
+        for(JDA shard: bot.getShards())
+            shard.getPresence().setActivity(activity);
+    }
+    
     private class SetstreamCmd extends OwnerCommand
     {
         private SetstreamCmd()
@@ -78,7 +89,7 @@ public class SetgameCmd extends OwnerCommand
             }
             try
             {
-                event.getJDA().getPresence().setActivity(Activity.streaming(parts[1], "https://twitch.tv/"+parts[0]));
+                setActivity(Activity.streaming(parts[1], "https://twitch.tv/"+parts[0]));
                 event.replySuccess("**"+event.getSelfUser().getName()
                         +"** is now streaming `"+parts[1]+"`");
             }
@@ -111,7 +122,7 @@ public class SetgameCmd extends OwnerCommand
             String title = event.getArgs().toLowerCase().startsWith("to") ? event.getArgs().substring(2).trim() : event.getArgs();
             try
             {
-                event.getJDA().getPresence().setActivity(Activity.listening(title));
+                setActivity(Activity.listening(title));
                 event.replySuccess("**"+event.getSelfUser().getName()+"** is now listening to `"+title+"`");
             } catch(Exception e) {
                 event.reply(event.getClient().getError()+" The game could not be set!");
@@ -141,7 +152,7 @@ public class SetgameCmd extends OwnerCommand
             String title = event.getArgs();
             try
             {
-                event.getJDA().getPresence().setActivity(Activity.watching(title));
+                setActivity(Activity.watching(title));
                 event.replySuccess("**"+event.getSelfUser().getName()+"** is now watching `"+title+"`");
             } catch(Exception e) {
                 event.reply(event.getClient().getError()+" The game could not be set!");
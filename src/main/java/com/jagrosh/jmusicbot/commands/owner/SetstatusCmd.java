@@ -18,6 +18,7 @@ package com.jagrosh.jmusicbot.commands.owner;
 import com.jagrosh.jdautilities.command.CommandEvent;
 import com.jagrosh.jmusicbot.Bot;
 import com.jagrosh.jmusicbot.commands.OwnerCommand;
+import net.dv8tion.jda.api.JDA;
 import net.dv8tion.jda.api.OnlineStatus;
 
 /**
@@ -26,8 +27,11 @@ import net.dv8tion.jda.api.OnlineStatus;
  */
 public class SetstatusCmd extends OwnerCommand
 {
+    private final Bot bot;
+    
     public SetstatusCmd(Bot bot)
     {
+        this.bot = bot;
         this.name = "setstatus";
         this.help = "sets the status the bot displays";
         this.arguments = "<status>";
@@ -46,7 +50,8 @@ public class SetstatusCmd extends OwnerCommand
             }
             else
             {
-                event.getJDA().getPresence().setStatus(status);
+                for(JDA shard: bot.getShards())
+                    shard.getPresence().setStatus(status);
                 event.replySuccess("Set the status to `"+status.getKey().toUpperCase()+"`");
             }
         } catch(Exception e) {
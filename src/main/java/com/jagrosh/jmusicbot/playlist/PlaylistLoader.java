@@ -16,9 +16,9 @@
 package com.jagrosh.jmusicbot.playlist;
 
 import com.jagrosh.jmusicbot.BotConfig;
+import com.jagrosh.jmusicbot.audio.PlayerManager;
 import com.jagrosh.jmusicbot.utils.OtherUtil;
 import com.sedmelluq.discord.lavaplayer.player.AudioLoadResultHandler;
-import com.sedmelluq.discord.lavaplayer.player.AudioPlayerManager;
 import com.sedmelluq.discord.lavaplayer.tools.FriendlyException;
 import com.sedmelluq.discord.lavaplayer.track.AudioPlaylist;
 import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
@@ -26,8 +26,11 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  *
@@ -35,13 +38,34 @@ import java.util.stream.Collectors;
  */
 public class PlaylistLoader
 {
+    private final static Logger LOG = LoggerFactory.getLogger(PlaylistLoader.class);
+    
     private final BotConfig config;
+    private final LongAdder playlistsLoaded = new LongAdder(), itemsLoaded = new LongAdder(), loadMillis = new LongAdder();
     
     public PlaylistLoader(BotConfig config)
     {
         this.config = config;
     }
     
+    public long getPlaylistsLoaded()
+    {
+        return playlistsLoaded.sum();
+    }
+    
+    public long getItemsLoaded()
+    {
+        return itemsLoaded.sum();
+    }
+    
+    /**
+     * @return how long loading all playlists took altogether, in milliseconds
+     */
+    public long getLoadTime()
+    {
+        return loadMillis.sum();
+    }
+    
     public List<String> getPlaylistNames()
     {
         if(folderExists())
@@ -147,6 +171,8 @@ public class PlaylistLoader
         private final List<AudioTrack> tracks = new LinkedList<>();
         private final List<PlaylistLoadError> errors = new LinkedList<>();
         private boolean loaded = false;
+        private long loadTime = -1;
+        private int position = 0; // where loadMore continues from
         
         private Playlist(String name, List<String> items, boolean shuffle)
         {
@@ -155,87 +181,233 @@ public class PlaylistLoader
             this.shuffle = shuffle;
         }
         
-        public void loadTracks(AudioPlayerManager manager, Consumer<AudioTrack> consumer, Runnable callback)
+        public void loadTracks(PlayerManager manager, Consumer<AudioTrack> consumer, Runnable callback)
+        {
+            loadTrackBatches(manager, ats -> ats.forEach(consumer), callback);
+        }
+        
+        /**
+         * Same as loadTracks, but hands over all the tracks of a playlist
+         * entry at once instead of one by one
+         */
+        public void loadTrackBatches(PlayerManager manager, Consumer<List<AudioTrack>> consumer, Runnable callback)
         {
             if(loaded)
                 return;
             loaded = true;
-            for(int i=0; i<items.size(); i++)
+            new Loading(manager, consumer, callback, 0, items.size(), true).start();
+        }
+        
+        /**
+         * Loads the next few entries, for going through the playlist a bit at
+         * a time instead of all at once. The tracks aren't kept in getTracks()
+         * @param manager the manager to load with
+         * @param count how many entries to load
+         * @param consumer called with the tracks of each entry, in order
+         * @param callback called once the entries are done loading
+         */
+        public void loadMore(PlayerManager manager, int count, Consumer<List<AudioTrack>> consumer, Runnable callback)
+        {
+            int from, to;
+            synchronized(this)
             {
-                boolean last = i+1 == items.size();
-                int index = i;
-                manager.loadItemOrdered(name, items.get(i), new AudioLoadResultHandler() 
+                from = position;
+                to = Math.min(items.size(), from + Math.max(1, count));
+                position = to;
+            }
+            if(from == to)
+            {
+                if(callback != null)
+                    callback.run();
+                return;
+            }
+            new Loading(manager, consumer, callback, from, to, false).start();
+        }
+        
+        /**
+         * @return true if {@link #loadMore} has entries left to load
+         */
+        public synchronized boolean hasMore()
+        {
+            return position < items.size();
+        }
+        
+        /**
+         * Loads several items at a time, but hands their results over in the
+         * order of the items, as if they had been loaded one by one
+         */
+        private class Loading
+        {
+            private final PlayerManager manager;
+            private final Consumer<List<AudioTrack>> consumer;
+            private final Runnable callback;
+            private final int from, to;
+            private final boolean keep; // whether the tracks are kept in getTracks()
+            private final Runnable[] results; // what to do with each item once it's its turn
+            private final long started = System.currentTimeMillis();
+            private int next; // the next item to load
+            private int delivered = 0; // how many items have been handed over
+            private boolean delivering = false; // whether some thread is handing items over
+            
+            private Loading(PlayerManager manager, Consumer<List<AudioTrack>> consumer, Runnable callback, int from, int to, boolean keep)
+            {
+                this.manager = manager;
+                this.consumer = consumer;
+                this.callback = callback;
+                this.from = from;
+                this.to = to;
+                this.keep = keep;
+                this.results = new Runnable[to - from];
+                this.next = from;
+            }
+            
+            private void start()
+            {
+                for(int i=0; i<Math.max(1, config.getPlaylistConcurrency()); i++)
+                    loadNext();
+            }
+            
+            private void loadNext()
+            {
+                int index;
+                synchronized(this)
+                {
+                    if(next >= to)
+                        return;
+                    index = next++;
+                }
+                manager.loadItemInBackground(items.get(index), new AudioLoadResultHandler() 
                 {
-                    private void done()
-                    {
-                        if(last)
-                        {
-                            if(shuffle)
-                                shuffleTracks();
-                            if(callback != null)
-                                callback.run();
-                        }
-                    }
-
                     @Override
                     public void trackLoaded(AudioTrack at) 
                     {
-                        if(config.isTooLong(at))
-                            errors.add(new PlaylistLoadError(index, items.get(index), "This track is longer than the allowed maximum"));
-                        else
-                        {
-                            at.setUserData(0L);
-                            tracks.add(at);
-                            consumer.accept(at);
-                        }
-                        done();
+                        finish(index, () -> addTrack(index, at));
                     }
 
                     @Override
                     public void playlistLoaded(AudioPlaylist ap) 
                     {
-                        if(ap.isSearchResult())
-                        {
-                            trackLoaded(ap.getTracks().get(0));
-                        }
-                        else if(ap.getSelectedTrack()!=null)
+                        finish(index, () -> 
                         {
-                            trackLoaded(ap.getSelectedTrack());
-                        }
-                        else
-                        {
-                            List<AudioTrack> loaded = new ArrayList<>(ap.getTracks());
-                            if(shuffle)
-                                for(int first =0; first<loaded.size(); first++)
-                                {
-                                    int second = (int)(Math.random()*loaded.size());
-                                    AudioTrack tmp = loaded.get(first);
-                                    loaded.set(first, loaded.get(second));
-                                    loaded.set(second, tmp);
-                                }
-                            loaded.removeIf(track -> config.isTooLong(track));
-                            loaded.forEach(at -> at.setUserData(0L));
-                            tracks.addAll(loaded);
-                            loaded.forEach(at -> consumer.accept(at));
-                        }
-                        done();
+                            if(ap.isSearchResult())
+                            {
+                                if(ap.getTracks().isEmpty())
+                                    errors.add(new PlaylistLoadError(index, items.get(index), "No matches found."));
+                                else
+                                    addTrack(index, ap.getTracks().get(0));
+                            }
+                            else if(ap.getSelectedTrack()!=null)
+                            {
+                                addTrack(index, ap.getSelectedTrack());
+                            }
+                            else
+                            {
+                                List<AudioTrack> loaded = new ArrayList<>(ap.getTracks());
+                                if(shuffle)
+                                    for(int first =0; first<loaded.size(); first++)
+                                    {
+                                        int second = (int)(Math.random()*loaded.size());
+                                        AudioTrack tmp = loaded.get(first);
+                                        loaded.set(first, loaded.get(second));
+                                        loaded.set(second, tmp);
+                                    }
+                                loaded.removeIf(track -> config.isTooLong(track));
+                                loaded.forEach(at -> at.setUserData(0L));
+                                if(keep)
+                                    tracks.addAll(loaded);
+                                consumer.accept(loaded);
+                            }
+                        });
                     }
 
                     @Override
                     public void noMatches() 
                     {
-                        errors.add(new PlaylistLoadError(index, items.get(index), "No matches found."));
-                        done();
+                        finish(index, () -> errors.add(new PlaylistLoadError(index, items.get(index), "No matches found.")));
                     }
 
                     @Override
                     public void loadFailed(FriendlyException fe) 
                     {
-                        errors.add(new PlaylistLoadError(index, items.get(index), "Failed to load track: "+fe.getLocalizedMessage()));
-                        done();
+                        finish(index, () -> errors.add(new PlaylistLoadError(index, items.get(index), "Failed to load track: "+fe.getLocalizedMessage())));
                     }
                 });
             }
+            
+            private void addTrack(int index, AudioTrack at)
+            {
+                if(config.isTooLong(at))
+                    errors.add(new PlaylistLoadError(index, items.get(index), "This track is longer than the allowed maximum"));
+                else
+                {
+                    at.setUserData(0L);
+                    if(keep)
+                        tracks.add(at);
+                    consumer.accept(Collections.singletonList(at));
+                }
+            }
+            
+            private void finish(int index, Runnable result)
+            {
+                boolean handOver;
+                synchronized(this)
+                {
+                    results[index - from] = result;
+                    // if someone is already handing items over, they'll get to this one
+                    handOver = !delivering;
+                    delivering = true;
+                }
+                if(!handOver)
+                {
+                    loadNext();
+                    return;
+                }
+                // hand over every item that is ready and has nothing before it
+                // still loading, outside the lock so other loads can finish
+                boolean done;
+                while(true)
+                {
+                    Runnable ready;
+                    int number;
+                    synchronized(this)
+                    {
+                        if(delivered == results.length || results[delivered] == null)
+                        {
+                            delivering = false;
+                            done = delivered == results.length;
+                            break;
+                        }
+                        ready = results[delivered];
+                        results[delivered] = null;
+                        // move on even if this item fails, so the rest still get handed over
+                        number = from + delivered++;
+                    }
+                    try
+                    {
+                        ready.run();
+                    }
+                    catch(Exception ex)
+                    {
+                        LOG.warn("Failed to add '" + items.get(number) + "' from playlist '" + name + "'", ex);
+                    }
+                }
+                if(!done)
+                {
+                    loadNext();
+                    return;
+                }
+                if(keep)
+                {
+                    loadTime = System.currentTimeMillis() - started;
+                    playlistsLoaded.increment();
+                    itemsLoaded.add(items.size());
+                    loadMillis.add(loadTime);
+                    if(shuffle)
+                        shuffleTracks();
+                }
+                if(callback != null)
+                    callback.run();
+            }
         }
         
         public void shuffleTracks()
@@ -262,6 +434,14 @@ public class PlaylistLoader
         {
             return errors;
         }
+        
+        /**
+         * @return how long loading took in milliseconds, or -1 if it hasn't finished
+         */
+        public long getLoadTime()
+        {
+            return loadTime;
+        }
     }
     
     public class PlaylistLoadError
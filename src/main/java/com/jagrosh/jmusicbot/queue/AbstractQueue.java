@@ -16,7 +16,7 @@
 package com.jagrosh.jmusicbot.queue;
 
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -28,13 +28,21 @@ public abstract class AbstractQueue<T extends Queueable>
 {
     protected AbstractQueue(AbstractQueue<T> queue)
     {
-        this.list = queue != null ? queue.getList() : new LinkedList<>();
+        // reuse the previous list when switching queue types, so nothing is copied
+        this.list = queue != null ? queue.getList() : new TreeList<>();
     }
 
     protected final List<T> list;
 
     public abstract int add(T item);
 
+    /**
+     * Adds several items at once, ending up in the same order as adding
+     * them one by one would
+     * @param items The items to add
+     */
+    public abstract void addAll(Collection<T> items);
+
     public void addAt(int index, T item)
     {
         if(index >= list.size())
@@ -48,7 +56,7 @@ public abstract class AbstractQueue<T extends Queueable>
     }
 
     public T pull() {
-        return list.remove(0);
+        return remove(0);
     }
 
     public boolean isEmpty()
@@ -97,6 +105,16 @@ public abstract class AbstractQueue<T extends Queueable>
             if(list.get(i).getIdentifier()==identifier)
                 iset.add(i);
         }
+        return shuffle(iset);
+    }
+
+    /**
+     * Randomly swaps the items at the given positions among each other
+     * @param iset The positions to shuffle
+     * @return the number of shuffled items
+     */
+    protected int shuffle(List<Integer> iset)
+    {
         for(int j=0; j<iset.size(); j++)
         {
             int first = iset.get(j);
@@ -123,8 +141,8 @@ public abstract class AbstractQueue<T extends Queueable>
      */
     public T moveItem(int from, int to)
     {
-        T item = list.remove(from);
-        list.add(to, item);
+        T item = remove(from);
+        addAt(to, item);
         return item;
     }
 }
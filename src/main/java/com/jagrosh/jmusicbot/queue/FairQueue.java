@@ -15,40 +15,333 @@
  */
 package com.jagrosh.jmusicbot.queue;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 
 /**
+ * A queue that interleaves requesters. The list is split into consecutive
+ * rounds, and each requester gets at most one new entry per round: a new
+ * entry goes to the end of the round after that requester's last entry, or
+ * to the end of the first round if the requester has nothing queued.
+ *
+ * This places entries differently from the old approach, which scanned
+ * forward from the requester's last entry and inserted before the first
+ * identifier that repeated. That scan could put an entry into a round that
+ * was already closed; now it always goes to the end of its round. With
+ * 1 2 2 queued, adding 1 used to give 1 2 1 2, and now gives 1 2 2 1.
+ *
+ * Rounds are also kept as they are when entries are pulled or removed,
+ * rather than worked out again from the front of the list, so a requester
+ * whose entry was removed from a round leaves room there for a newcomer.
+ *
+ * Round sizes and the rounds each requester is in are indexed, so adding
+ * doesn't scan the list, and removing or shuffling a requester's entries
+ * only looks at the rounds that requester is in.
  *
  * @author John Grosh (jagrosh)
  * @param <T>
  */
 public class FairQueue<T extends Queueable> extends AbstractQueue<T>
 {
+    private static final int SMALL_BATCH = 8;
+    
+    private final Rounds rounds = new Rounds();
+    private final Map<Long, TreeMap<Integer,Integer>> entries = new HashMap<>(); // identifier -> round -> count
+
     public FairQueue(AbstractQueue<T> queue)
     {
         super(queue);
+        // the list may come from a different kind of queue, so split it up
+        // into rounds the same way adding to a fair queue would have
+        Set<Long> set = new HashSet<>();
+        int round = 0;
+        for(T item: list)
+        {
+            if(!set.add(item.getIdentifier()))
+            {
+                set.clear();
+                set.add(item.getIdentifier());
+                round++;
+            }
+            track(item.getIdentifier(), round);
+        }
     }
 
-    protected final Set<Long> set = new HashSet<>();
-
     @Override
     public int add(T item)
     {
-        int lastIndex;
-        for(lastIndex=list.size()-1; lastIndex>-1; lastIndex--)
-            if(list.get(lastIndex).getIdentifier() == item.getIdentifier())
-                break;
-        lastIndex++;
-        set.clear();
-        for(; lastIndex<list.size(); lastIndex++)
+        TreeMap<Integer,Integer> rs = entries.get(item.getIdentifier());
+        int round = rs == null ? rounds.first() : rs.lastKey() + 1;
+        int index = round < rounds.limit() ? rounds.end(round) : list.size();
+        list.add(index, item);
+        track(item.getIdentifier(), round);
+        return index;
+    }
+
+    @Override
+    public void addAll(Collection<T> items)
+    {
+        // a few entries are cheaper to insert one at a time than to merge
+        if(items.size() <= SMALL_BATCH)
+        {
+            items.forEach(this::add);
+            return;
+        }
+        // work out the round for every new item, the same way add would
+        Map<Long,Integer> next = new HashMap<>();
+        TreeMap<Integer,List<T>> added = new TreeMap<>();
+        for(T item: items)
+        {
+            int round = next.computeIfAbsent(item.getIdentifier(), id -> 
+            {
+                TreeMap<Integer,Integer> rs = entries.get(id);
+                return rs == null ? rounds.first() : rs.lastKey() + 1;
+            });
+            next.put(item.getIdentifier(), round + 1);
+            added.computeIfAbsent(round, r -> new ArrayList<>()).add(item);
+        }
+        
+        // only the rounds from the lowest to the highest affected one change,
+        // and rebuilding them costs a step per entry in them, so a batch
+        // spread thin over big rounds is also added one at a time
+        int low = added.firstKey(), high = added.lastKey();
+        int from = low < rounds.limit() ? rounds.end(low) : list.size();
+        int to = high < rounds.limit() ? rounds.end(high) : list.size();
+        if(to - from > items.size() * SMALL_BATCH)
+        {
+            items.forEach(this::add);
+            return;
+        }
+        List<T> span = list.subList(from, to);
+        List<T> merged = new ArrayList<>(span.size() + items.size());
+        for(int round = low; round <= high; round++)
+        {
+            if(round > low && round < rounds.limit())
+                merged.addAll(span.subList(rounds.start(round) - from, rounds.end(round) - from));
+            merged.addAll(added.getOrDefault(round, Collections.emptyList()));
+        }
+        span.clear();
+        list.addAll(from, merged);
+        added.forEach((round, batch) -> batch.forEach(item -> track(item.getIdentifier(), round)));
+    }
+
+    @Override
+    public void addAt(int index, T item)
+    {
+        int round;
+        if(list.isEmpty())
+            round = rounds.first();
+        else if(index >= list.size())
+            round = rounds.limit() - 1;
+        else
+            round = rounds.roundAt(index);
+        super.addAt(index, item);
+        track(item.getIdentifier(), round);
+    }
+
+    @Override
+    public T remove(int index)
+    {
+        int round = rounds.roundAt(index);
+        T item = list.remove(index);
+        untrack(item.getIdentifier(), round);
+        return item;
+    }
+
+    @Override
+    public int removeAll(long identifier)
+    {
+        TreeMap<Integer,Integer> rs = entries.get(identifier);
+        if(rs == null)
+            return 0;
+        int count = 0;
+        // go backwards so the positions of earlier rounds don't change
+        for(int round: new ArrayList<>(rs.descendingKeySet()))
+        {
+            int start = rounds.start(round);
+            for(int i=rounds.end(round)-1; i>=start; i--)
+            {
+                if(list.get(i).getIdentifier()==identifier)
+                {
+                    list.remove(i);
+                    untrack(identifier, round);
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public void clear()
+    {
+        super.clear();
+        entries.clear();
+        rounds.clear();
+    }
+
+    @Override
+    public int shuffle(long identifier)
+    {
+        TreeMap<Integer,Integer> rs = entries.get(identifier);
+        if(rs == null)
+            return 0;
+        List<Integer> iset = new ArrayList<>();
+        for(int round: rs.keySet())
         {
-            if(set.contains(list.get(lastIndex).getIdentifier()))
-                break;
-            set.add(list.get(lastIndex).getIdentifier());
+            int end = rounds.end(round);
+            for(int i=rounds.start(round); i<end; i++)
+                if(list.get(i).getIdentifier()==identifier)
+                    iset.add(i);
         }
-        list.add(lastIndex, item);
-        return lastIndex;
+        return shuffle(iset);
+    }
+
+    @Override
+    public void skip(int number)
+    {
+        if(number <= 0)
+            return;
+        // the skipped items are at the front, so they may cover several rounds; each one
+        // is still in whatever round first() gives, since first() moves on as rounds empty
+        for(T item: list.subList(0, number))
+            untrack(item.getIdentifier(), rounds.first());
+        super.skip(number);
+    }
+
+    private void track(long identifier, int round)
+    {
+        entries.computeIfAbsent(identifier, k -> new TreeMap<>()).merge(round, 1, Integer::sum);
+        rounds.add(round, 1);
+    }
+
+    private void untrack(long identifier, int round)
+    {
+        TreeMap<Integer,Integer> rs = entries.get(identifier);
+        if(rs.merge(round, -1, Integer::sum) == 0)
+            rs.remove(round);
+        if(rs.isEmpty())
+            entries.remove(identifier);
+        rounds.add(round, -1);
     }
 
+    /**
+     * Sizes of the rounds, kept in a Fenwick tree so the position where a
+     * round starts or ends can be found in O(log rounds). Rounds are numbered
+     * with increasing ints; the live ones are [first, limit), and slot 0 of
+     * the arrays holds round number 'offset'.
+     */
+    private static class Rounds
+    {
+        private int[] sizes = new int[16];
+        private int[] tree = new int[17];
+        private int offset = 0, first = 0, limit = 0;
+
+        private int first()
+        {
+            return first;
+        }
+
+        private int limit()
+        {
+            return limit;
+        }
+
+        /**
+         * @return the position in the list where the given round starts
+         */
+        private int start(int round)
+        {
+            return prefix(round - offset);
+        }
+
+        /**
+         * @return the position in the list right after the given round
+         */
+        private int end(int round)
+        {
+            return prefix(round - offset + 1);
+        }
+
+        /**
+         * @return the round containing the given position in the list
+         */
+        private int roundAt(int index)
+        {
+            int slot = 0;
+            for(int step = Integer.highestOneBit(sizes.length); step > 0; step >>= 1)
+            {
+                if(slot + step <= sizes.length && tree[slot + step] <= index)
+                {
+                    slot += step;
+                    index -= tree[slot];
+                }
+            }
+            return slot + offset;
+        }
+
+        private void add(int round, int delta)
+        {
+            if(round == limit)
+            {
+                if(limit - offset == sizes.length)
+                    resize();
+                limit++;
+            }
+            int slot = round - offset;
+            sizes[slot] += delta;
+            for(int i = slot + 1; i <= sizes.length; i += i & -i)
+                tree[i] += delta;
+            while(first < limit && sizes[first - offset] == 0)
+                first++;
+            // once everything is empty, start numbering from scratch
+            if(first == limit)
+                offset = first = limit = 0;
+        }
+
+        private void clear()
+        {
+            Arrays.fill(sizes, 0);
+            Arrays.fill(tree, 0);
+            offset = first = limit = 0;
+        }
+
+        // sum of the sizes of the first 'count' slots
+        private int prefix(int count)
+        {
+            int sum = 0;
+            for(int i = Math.min(count, sizes.length); i > 0; i -= i & -i)
+                sum += tree[i];
+            return sum;
+        }
+
+        private void resize()
+        {
+            // drop the empty rounds before 'first' if that frees enough space
+            int drop = first - offset;
+            int[] old = sizes;
+            if(drop < old.length / 2)
+                sizes = new int[old.length * 2];
+            else
+                sizes = new int[old.length];
+            System.arraycopy(old, drop, sizes, 0, old.length - drop);
+            offset = first;
+            tree = new int[sizes.length + 1];
+            for(int i = 1; i <= sizes.length; i++)
+            {
+                tree[i] += sizes[i - 1];
+                int parent = i + (i & -i);
+                if(parent <= sizes.length)
+                    tree[parent] += tree[i];
+            }
+        }
+    }
 }
@@ -15,6 +15,8 @@
  */
 package com.jagrosh.jmusicbot.queue;
 
+import java.util.Collection;
+
 /**
  *
  * @author Wolfgang Schwendtbauer
@@ -34,4 +36,10 @@ public class LinearQueue<T extends Queueable> extends AbstractQueue<T>
         return list.size() - 1;
     }
 
+    @Override
+    public void addAll(Collection<T> items)
+    {
+        list.addAll(items);
+    }
+
 }
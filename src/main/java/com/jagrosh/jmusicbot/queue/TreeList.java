@@ -0,0 +1,351 @@
+/*
+ * Copyright 2026 John Grosh (jagrosh).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jagrosh.jmusicbot.queue;
+
+import java.util.AbstractList;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A list backed by an implicit treap (a randomized balanced tree ordered by
+ * position), so positional reads, inserts and removals are all O(log n)
+ * instead of walking the list like a LinkedList does.
+ *
+ * This is not thread-safe, same as the LinkedList it replaces.
+ *
+ * @author John Grosh (jagrosh)
+ * @param <T>
+ */
+public class TreeList<T> extends AbstractList<T>
+{
+    private Node<T> root;
+
+    // results of the last split, to avoid allocating on every operation
+    private Node<T> splitLeft, splitRight;
+
+    public TreeList()
+    {
+    }
+
+    public TreeList(Collection<? extends T> items)
+    {
+        addAll(items);
+    }
+
+    @Override
+    public int size()
+    {
+        return size(root);
+    }
+
+    @Override
+    public T get(int index)
+    {
+        checkIndex(index);
+        return node(index).value;
+    }
+
+    @Override
+    public T set(int index, T value)
+    {
+        checkIndex(index);
+        Node<T> node = node(index);
+        T old = node.value;
+        node.value = value;
+        return old;
+    }
+
+    @Override
+    public void add(int index, T value)
+    {
+        checkPositionIndex(index);
+        split(root, index);
+        Node<T> right = splitRight;
+        root = merge(merge(splitLeft, new Node<>(value)), right);
+        modCount++;
+    }
+
+    @Override
+    public T remove(int index)
+    {
+        checkIndex(index);
+        split(root, index);
+        Node<T> left = splitLeft;
+        split(splitRight, 1);
+        Node<T> removed = splitLeft;
+        root = merge(left, splitRight);
+        modCount++;
+        return removed.value;
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends T> items)
+    {
+        return addAll(size(), items);
+    }
+
+    @Override
+    public boolean addAll(int index, Collection<? extends T> items)
+    {
+        checkPositionIndex(index);
+        if(items.isEmpty())
+            return false;
+        Node<T> built = build(items);
+        split(root, index);
+        Node<T> right = splitRight;
+        root = merge(merge(splitLeft, built), right);
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public void clear()
+    {
+        root = null;
+        modCount++;
+    }
+
+    @Override
+    protected void removeRange(int fromIndex, int toIndex)
+    {
+        if(fromIndex >= toIndex)
+            return;
+        split(root, fromIndex);
+        Node<T> left = splitLeft;
+        split(splitRight, toIndex - fromIndex);
+        root = merge(left, splitRight);
+        modCount++;
+    }
+
+    @Override
+    public Iterator<T> iterator()
+    {
+        return new Itr();
+    }
+
+    // tree operations
+    private Node<T> node(int index)
+    {
+        Node<T> node = root;
+        while(true)
+        {
+            int leftSize = size(node.left);
+            if(index < leftSize)
+                node = node.left;
+            else if(index == leftSize)
+                return node;
+            else
+            {
+                index -= leftSize + 1;
+                node = node.right;
+            }
+        }
+    }
+
+    /**
+     * Splits a tree so that splitLeft holds the first count items and
+     * splitRight holds the rest
+     */
+    private void split(Node<T> node, int count)
+    {
+        if(node == null)
+        {
+            splitLeft = null;
+            splitRight = null;
+        }
+        else if(size(node.left) >= count)
+        {
+            split(node.left, count);
+            node.left = splitRight;
+            node.update();
+            splitRight = node;
+        }
+        else
+        {
+            split(node.right, count - size(node.left) - 1);
+            node.right = splitLeft;
+            node.update();
+            splitLeft = node;
+        }
+    }
+
+    private Node<T> merge(Node<T> left, Node<T> right)
+    {
+        if(left == null)
+            return right;
+        if(right == null)
+            return left;
+        if(left.priority > right.priority)
+        {
+            left.right = merge(left.right, right);
+            left.update();
+            return left;
+        }
+        else
+        {
+            right.left = merge(left, right.left);
+            right.update();
+            return right;
+        }
+    }
+
+    /**
+     * Builds a tree from a collection in linear time, using the usual stack
+     * construction of a cartesian tree over the random priorities
+     */
+    private Node<T> build(Collection<? extends T> items)
+    {
+        Deque<Node<T>> stack = new ArrayDeque<>();
+        for(T item: items)
+        {
+            Node<T> node = new Node<>(item);
+            Node<T> last = null;
+            while(!stack.isEmpty() && stack.peek().priority < node.priority)
+                last = stack.pop();
+            node.left = last;
+            if(!stack.isEmpty())
+                stack.peek().right = node;
+            stack.push(node);
+        }
+        Node<T> top = stack.peekLast();
+        updateAll(top);
+        return top;
+    }
+
+    private static void updateAll(Node<?> node)
+    {
+        if(node == null)
+            return;
+        updateAll(node.left);
+        updateAll(node.right);
+        node.update();
+    }
+
+    private static int size(Node<?> node)
+    {
+        return node == null ? 0 : node.size;
+    }
+
+    private void checkIndex(int index)
+    {
+        if(index < 0 || index >= size())
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+    }
+
+    private void checkPositionIndex(int index)
+    {
+        if(index < 0 || index > size())
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+    }
+
+    private static class Node<T>
+    {
+        private final int priority = ThreadLocalRandom.current().nextInt();
+        private T value;
+        private int size = 1;
+        private Node<T> left, right;
+
+        private Node(T value)
+        {
+            this.value = value;
+        }
+
+        private void update()
+        {
+            size = 1 + TreeList.size(left) + TreeList.size(right);
+        }
+    }
+
+    /**
+     * In-order iterator, so iterating the whole list stays linear
+     */
+    private class Itr implements Iterator<T>
+    {
+        private final Deque<Node<T>> stack = new ArrayDeque<>();
+        private int index = 0;
+        private int lastReturned = -1;
+        private int expectedModCount = modCount;
+
+        private Itr()
+        {
+            seek(0);
+        }
+
+        private void seek(int target)
+        {
+            stack.clear();
+            Node<T> node = root;
+            while(node != null)
+            {
+                int leftSize = size(node.left);
+                if(target < leftSize)
+                {
+                    stack.push(node);
+                    node = node.left;
+                }
+                else if(target == leftSize)
+                {
+                    stack.push(node);
+                    return;
+                }
+                else
+                {
+                    target -= leftSize + 1;
+                    node = node.right;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            return index < size();
+        }
+
+        @Override
+        public T next()
+        {
+            if(modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            if(stack.isEmpty())
+                throw new NoSuchElementException();
+            Node<T> node = stack.pop();
+            for(Node<T> next = node.right; next != null; next = next.left)
+                stack.push(next);
+            lastReturned = index++;
+            return node.value;
+        }
+
+        @Override
+        public void remove()
+        {
+            if(lastReturned < 0)
+                throw new IllegalStateException();
+            if(modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            TreeList.this.remove(lastReturned);
+            index = lastReturned;
+            lastReturned = -1;
+            expectedModCount = modCount;
+            seek(index);
+        }
+    }
+}
@@ -0,0 +1,283 @@
+/*
+ * Copyright 2026 John Grosh (john.a.grosh@gmail.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jagrosh.jmusicbot.settings;
+
+import com.jagrosh.jmusicbot.utils.OtherUtil;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps settings in an append-only journal, with one line per change:
+ * the guild id, a space, and that guild's settings as JSON. Writing only
+ * appends the guilds that changed, and when most of the journal is made of
+ * outdated lines it is compacted down to one line per guild.
+ *
+ * Only the position of each guild's latest line is kept in memory, so
+ * settings can also be read one guild at a time.
+ *
+ * If there is no journal yet, it starts out with the contents of
+ * serversettings.json.
+ *
+ * @author John Grosh (john.a.grosh@gmail.com)
+ */
+public class JournalSettingsStorage implements SettingsStorage
+{
+    public final static String JOURNAL_FILE = "serversettings.journal";
+    private final static int COMPACT_MIN = 1000;
+    private final Path path, legacyPath;
+    private final Map<Long,Line> lines = new HashMap<>(); // the latest line for each guild
+    private long size = 0; // where the next line will be appended
+    private int count = 0; // how many lines the journal has, including outdated ones
+
+    public JournalSettingsStorage()
+    {
+        this(OtherUtil.getPath(JOURNAL_FILE), OtherUtil.getPath(JsonSettingsStorage.SETTINGS_FILE));
+    }
+
+    public JournalSettingsStorage(Path path, Path legacyPath)
+    {
+        this.path = path;
+        this.legacyPath = legacyPath;
+    }
+
+    @Override
+    public synchronized Map<Long,JSONObject> load() throws IOException
+    {
+        Map<Long,JSONObject> loaded = new HashMap<>();
+        open(loaded);
+        LoggerFactory.getLogger("Settings").info(JOURNAL_FILE + " loaded from " + path.toAbsolutePath());
+        return loaded;
+    }
+
+    @Override
+    public synchronized void index() throws IOException
+    {
+        open(null);
+        LoggerFactory.getLogger("Settings").info(JOURNAL_FILE + " indexed from " + path.toAbsolutePath() + " (" + lines.size() + " servers)");
+    }
+
+    @Override
+    public synchronized JSONObject read(long guildId) throws IOException
+    {
+        Line line = lines.get(guildId);
+        if(line == null)
+            return null;
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+        {
+            return new JSONObject(json(read(channel, line)));
+        }
+    }
+
+    @Override
+    public synchronized void write(Map<Long,JSONObject> changed) throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Map<Long,Line> written = new HashMap<>(); // offsets relative to where the lines get appended
+        for(Map.Entry<Long,JSONObject> entry: changed.entrySet())
+        {
+            byte[] line = (entry.getKey() + " " + entry.getValue().toString()).getBytes(StandardCharsets.UTF_8);
+            written.put(entry.getKey(), new Line(out.size(), line.length));
+            out.write(line);
+            out.write('\n');
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(out.toByteArray());
+        long position;
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE))
+        {
+            // append where the file really ends; if an earlier write left part
+            // of a line behind, end it first so it stays a line of its own
+            position = channel.size();
+            if(position != size)
+            {
+                channel.write(ByteBuffer.wrap(new byte[]{'\n'}), position);
+                position++;
+                count++;
+            }
+            try
+            {
+                while(buffer.hasRemaining())
+                    channel.write(buffer, position + buffer.position());
+            }
+            catch(IOException ex)
+            {
+                // cut off what made it in, so the journal doesn't end in half a line
+                try
+                {
+                    channel.truncate(position);
+                }
+                catch(IOException ignore) {}
+                size = position;
+                throw ex;
+            }
+        }
+        // only point at the new lines once they have been written
+        for(Map.Entry<Long,Line> entry: written.entrySet())
+            lines.put(entry.getKey(), new Line(position + entry.getValue().offset, entry.getValue().length));
+        size = position + buffer.limit();
+        count += changed.size();
+        if(count > COMPACT_MIN && count > lines.size() * 2)
+            compact();
+    }
+
+    /**
+     * Reads through the journal, remembering where each guild's latest line is,
+     * and parsing the lines too if a map is given
+     */
+    private void open(Map<Long,JSONObject> loaded) throws IOException
+    {
+        lines.clear();
+        size = 0;
+        count = 0;
+        if(!Files.exists(path))
+            importLegacy();
+
+        boolean damaged = false;
+        try(InputStream in = Files.newInputStream(path))
+        {
+            byte[] buffer = new byte[1 << 16];
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            long lineStart = 0;
+            int read;
+            while((read = in.read(buffer)) != -1)
+            {
+                int from = 0;
+                for(int i = 0; i < read; i++)
+                {
+                    if(buffer[i] != '\n')
+                        continue;
+                    line.write(buffer, from, i - from);
+                    damaged |= !record(line.toByteArray(), lineStart, loaded);
+                    line.reset();
+                    from = i + 1;
+                    lineStart = size + i + 1;
+                }
+                line.write(buffer, from, read - from);
+                size += read;
+            }
+            // a line without a newline was cut off by a crash while it was being written
+            damaged |= line.size() > 0;
+        }
+        // rewrite the journal, so nothing gets appended after a damaged line
+        if(damaged)
+        {
+            LoggerFactory.getLogger("Settings").warn("Skipped damaged lines in " + JOURNAL_FILE);
+            compact();
+        }
+    }
+
+    private boolean record(byte[] line, long offset, Map<Long,JSONObject> loaded)
+    {
+        count++;
+        try
+        {
+            int space = 0;
+            while(line[space] != ' ')
+                space++;
+            long id = Long.parseLong(new String(line, 0, space, StandardCharsets.US_ASCII));
+            if(loaded != null)
+                loaded.put(id, new JSONObject(json(line)));
+            lines.put(id, new Line(offset, line.length));
+            return true;
+        }
+        catch(IndexOutOfBoundsException | NumberFormatException | JSONException ex)
+        {
+            return false;
+        }
+    }
+
+    private void importLegacy() throws IOException
+    {
+        StringBuilder sb = new StringBuilder();
+        if(Files.exists(legacyPath))
+        {
+            Map<Long,JSONObject> legacy = new JsonSettingsStorage(legacyPath).load();
+            legacy.forEach((id, o) -> sb.append(id).append(' ').append(o.toString()).append('\n'));
+            LoggerFactory.getLogger("Settings").info("Importing " + legacy.size() + " server settings into " + path.toAbsolutePath());
+        }
+        else
+            LoggerFactory.getLogger("Settings").info(JOURNAL_FILE + " will be created in " + path.toAbsolutePath());
+        JsonSettingsStorage.writeAtomically(path, sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Copies the latest line of each guild into a new journal, which then
+     * replaces the old one
+     */
+    private void compact() throws IOException
+    {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        Map<Long,Line> compacted = new HashMap<>();
+        long position = 0;
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+                OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp)))
+        {
+            for(Map.Entry<Long,Line> entry: lines.entrySet())
+            {
+                byte[] line = read(channel, entry.getValue());
+                out.write(line);
+                out.write('\n');
+                compacted.put(entry.getKey(), new Line(position, line.length));
+                position += line.length + 1;
+            }
+        }
+        JsonSettingsStorage.replace(temp, path);
+        lines.clear();
+        lines.putAll(compacted);
+        size = position;
+        count = lines.size();
+    }
+
+    private static byte[] read(FileChannel channel, Line line) throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(line.length);
+        while(buffer.hasRemaining())
+            if(channel.read(buffer, line.offset + buffer.position()) < 0)
+                throw new IOException("Unexpected end of " + JOURNAL_FILE);
+        return buffer.array();
+    }
+
+    private static String json(byte[] line)
+    {
+        String str = new String(line, StandardCharsets.UTF_8);
+        return str.substring(str.indexOf(' ') + 1);
+    }
+
+    private static class Line
+    {
+        private final long offset;
+        private final int length;
+
+        private Line(long offset, int length)
+        {
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2026 John Grosh (john.a.grosh@gmail.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jagrosh.jmusicbot.settings;
+
+import com.jagrosh.jmusicbot.utils.OtherUtil;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import org.json.JSONObject;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps all settings in serversettings.json, rewriting the whole file on
+ * every write.
+ *
+ * @author John Grosh (john.a.grosh@gmail.com)
+ */
+public class JsonSettingsStorage implements SettingsStorage
+{
+    public final static String SETTINGS_FILE = "serversettings.json";
+    private final Path path;
+    private JSONObject written = new JSONObject(); // what is in the file, so only changed guilds are serialized again
+
+    public JsonSettingsStorage()
+    {
+        this(OtherUtil.getPath(SETTINGS_FILE));
+    }
+
+    public JsonSettingsStorage(Path path)
+    {
+        this.path = path;
+    }
+
+    @Override
+    public synchronized Map<Long,JSONObject> load() throws IOException
+    {
+        Map<Long,JSONObject> loaded = new HashMap<>();
+        try {
+            written = new JSONObject(new String(Files.readAllBytes(path)));
+        } catch (NoSuchFileException e) {
+            // create an empty json file
+            LoggerFactory.getLogger("Settings").info(SETTINGS_FILE + " will be created in " + path.toAbsolutePath());
+            Files.write(path, new JSONObject().toString(4).getBytes());
+            return loaded;
+        }
+        written.keySet().forEach(id -> loaded.put(Long.parseLong(id), written.getJSONObject(id)));
+        LoggerFactory.getLogger("Settings").info(SETTINGS_FILE + " loaded from " + path.toAbsolutePath());
+        return loaded;
+    }
+
+    @Override
+    public void index() throws IOException
+    {
+        // the whole file has to be parsed anyway, but at least no settings are created until they're needed
+        load();
+    }
+
+    @Override
+    public synchronized JSONObject read(long guildId)
+    {
+        return written.optJSONObject(Long.toString(guildId));
+    }
+
+    @Override
+    public synchronized void write(Map<Long,JSONObject> changed) throws IOException
+    {
+        changed.forEach((id, o) -> written.put(Long.toString(id), o));
+        writeAtomically(path, written.toString(4).getBytes());
+    }
+
+    /**
+     * Writes to a temporary file first and then moves it over the real one,
+     * so a crash in the middle of writing can't leave a half-written file
+     */
+    static void writeAtomically(Path path, byte[] data) throws IOException
+    {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        Files.write(temp, data);
+        replace(temp, path);
+    }
+
+    static void replace(Path temp, Path path) throws IOException
+    {
+        try {
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch(AtomicMoveNotSupportedException ex) {
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
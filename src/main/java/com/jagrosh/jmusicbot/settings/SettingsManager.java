@@ -16,11 +16,18 @@
 package com.jagrosh.jmusicbot.settings;
 
 import com.jagrosh.jdautilities.command.GuildSettingsManager;
-import com.jagrosh.jmusicbot.utils.OtherUtil;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.NoSuchFileException;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import net.dv8tion.jda.api.entities.Guild;
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -32,48 +39,59 @@ import org.slf4j.LoggerFactory;
  */
 public class SettingsManager implements GuildSettingsManager<Settings>
 {
-    private final static String SETTINGS_FILE = "serversettings.json";
-    private final HashMap<Long,Settings> settings;
+    private final static long WRITE_DELAY = 5; // seconds
+    private final static long MAX_RETRY_DELAY = 300; // seconds
+    private final Map<Long,Settings> settings;
+    private final SettingsStorage storage;
+    private final boolean lazy;
+    private final Map<Long,CompletableFuture<Settings>> loading = new ConcurrentHashMap<>();
+    
+    // changes are written in the background, a few seconds after they happen,
+    // so that several changes end up in a single write
+    private final Map<Long,Settings> dirty = new ConcurrentHashMap<>();
+    private final Map<Long,Settings> writing = new ConcurrentHashMap<>();
+    private final AtomicBoolean writeScheduled = new AtomicBoolean(false);
+    private long retryDelay = WRITE_DELAY; // seconds until a failed write is tried again
+    private final ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor(r -> 
+    {
+        Thread t = new Thread(r, "settings-writer");
+        t.setDaemon(true);
+        return t;
+    });
 
-    public SettingsManager()
+    /**
+     * @param storage where settings are stored
+     * @param cacheSize how many guilds' settings to keep in memory, reading
+     *                  the others from storage when they're needed; if this is
+     *                  zero or less, every guild's settings are loaded up front
+     */
+    public SettingsManager(SettingsStorage storage, int cacheSize)
     {
-        this.settings = new HashMap<>();
+        this.storage = storage;
+        this.lazy = cacheSize > 0;
+        if(lazy)
+        {
+            // least recently used settings are dropped, as long as they've been written
+            this.settings = Collections.synchronizedMap(new LinkedHashMap<Long,Settings>(16, 0.75f, true)
+            {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long,Settings> eldest)
+                {
+                    return size() > cacheSize && !dirty.containsKey(eldest.getKey()) && !writing.containsKey(eldest.getKey());
+                }
+            });
+        }
+        else
+            this.settings = new ConcurrentHashMap<>();
 
         try {
-            JSONObject loadedSettings = new JSONObject(new String(Files.readAllBytes(OtherUtil.getPath(SETTINGS_FILE))));
-            loadedSettings.keySet().forEach((id) -> {
-                JSONObject o = loadedSettings.getJSONObject(id);
-
-                // Legacy version support: On versions 0.3.3 and older, the repeat mode was represented as a boolean.
-                if (!o.has("repeat_mode") && o.has("repeat") && o.getBoolean("repeat"))
-                    o.put("repeat_mode", RepeatMode.ALL);
-
-
-                settings.put(Long.parseLong(id), new Settings(this,
-                        o.has("text_channel_id") ? o.getString("text_channel_id")            : null,
-                        o.has("voice_channel_id")? o.getString("voice_channel_id")           : null,
-                        o.has("dj_role_id")      ? o.getString("dj_role_id")                 : null,
-                        o.has("volume")          ? o.getInt("volume")                        : 100,
-                        o.has("default_playlist")? o.getString("default_playlist")           : null,
-                        o.has("repeat_mode")     ? o.getEnum(RepeatMode.class, "repeat_mode"): RepeatMode.OFF,
-                        o.has("prefix")          ? o.getString("prefix")                     : null,
-                        o.has("skip_ratio")      ? o.getDouble("skip_ratio")                 : -1,
-                        o.has("queue_type")      ? o.getEnum(QueueType.class, "queue_type")  : QueueType.FAIR));
-            });
-        } catch (NoSuchFileException e) {
-            // create an empty json file
-            try {
-                LoggerFactory.getLogger("Settings").info("serversettings.json will be created in " + OtherUtil.getPath("serversettings.json").toAbsolutePath());
-                Files.write(OtherUtil.getPath("serversettings.json"), new JSONObject().toString(4).getBytes());
-            } catch(IOException ex) {
-                LoggerFactory.getLogger("Settings").warn("Failed to create new settings file: "+ex);
-            }
-            return;
+            if(lazy)
+                storage.index();
+            else
+                storage.load().forEach((guildId, o) -> settings.put(guildId, fromJSON(guildId, o)));
         } catch(IOException | JSONException e) {
             LoggerFactory.getLogger("Settings").warn("Failed to load server settings: "+e);
         }
-
-        LoggerFactory.getLogger("Settings").info("serversettings.json loaded from " + OtherUtil.getPath("serversettings.json").toAbsolutePath());
     }
 
     /**
@@ -90,44 +108,153 @@ public class SettingsManager implements GuildSettingsManager<Settings>
 
     public Settings getSettings(long guildId)
     {
-        return settings.computeIfAbsent(guildId, id -> createDefaultSettings());
+        Settings s = settings.get(guildId);
+        if(s != null)
+            return s;
+        // storage is read without holding the map's lock, so other guilds don't
+        // wait on it, and everyone after the same guild shares a single read
+        CompletableFuture<Settings> load = new CompletableFuture<>();
+        CompletableFuture<Settings> running = loading.putIfAbsent(guildId, load);
+        if(running != null)
+            return running.join();
+        try
+        {
+            // it may have been loaded in between
+            s = settings.get(guildId);
+            if(s == null)
+            {
+                s = loadSettings(guildId);
+                settings.put(guildId, s);
+            }
+            load.complete(s);
+            return s;
+        }
+        catch(RuntimeException ex)
+        {
+            load.completeExceptionally(ex);
+            throw ex;
+        }
+        finally
+        {
+            loading.remove(guildId, load);
+        }
     }
 
-    private Settings createDefaultSettings()
+    private Settings loadSettings(long guildId)
     {
-        return new Settings(this, 0, 0, 0, 100, null, RepeatMode.OFF, null, -1, QueueType.FAIR);
+        // settings that haven't been written yet may have been dropped from memory while still in use
+        Settings s = dirty.get(guildId);
+        if(s == null)
+            s = writing.get(guildId);
+        if(s != null)
+            return s;
+        if(lazy)
+        {
+            try {
+                JSONObject o = storage.read(guildId);
+                if(o != null)
+                    return fromJSON(guildId, o);
+            } catch(IOException | JSONException e) {
+                LoggerFactory.getLogger("Settings").warn("Failed to load settings for server " + guildId + ": " + e);
+            }
+        }
+        return createDefaultSettings(guildId);
     }
 
-    protected void writeSettings()
+    private Settings fromJSON(long guildId, JSONObject o)
     {
-        JSONObject obj = new JSONObject();
-        settings.keySet().stream().forEach(key -> {
-            JSONObject o = new JSONObject();
-            Settings s = settings.get(key);
-            if(s.textId!=0)
-                o.put("text_channel_id", Long.toString(s.textId));
-            if(s.voiceId!=0)
-                o.put("voice_channel_id", Long.toString(s.voiceId));
-            if(s.roleId!=0)
-                o.put("dj_role_id", Long.toString(s.roleId));
-            if(s.getVolume()!=100)
-                o.put("volume",s.getVolume());
-            if(s.getDefaultPlaylist() != null)
-                o.put("default_playlist", s.getDefaultPlaylist());
-            if(s.getRepeatMode()!=RepeatMode.OFF)
-                o.put("repeat_mode", s.getRepeatMode());
-            if(s.getPrefix() != null)
-                o.put("prefix", s.getPrefix());
-            if(s.getSkipRatio() != -1)
-                o.put("skip_ratio", s.getSkipRatio());
-            if(s.getQueueType() != QueueType.FAIR)
-                o.put("queue_type", s.getQueueType().name());
-            obj.put(Long.toString(key), o);
-        });
+        // Legacy version support: On versions 0.3.3 and older, the repeat mode was represented as a boolean.
+        if (!o.has("repeat_mode") && o.has("repeat") && o.getBoolean("repeat"))
+            o.put("repeat_mode", RepeatMode.ALL);
+
+        return new Settings(this, guildId,
+                o.has("text_channel_id") ? o.getString("text_channel_id")            : null,
+                o.has("voice_channel_id")? o.getString("voice_channel_id")           : null,
+                o.has("dj_role_id")      ? o.getString("dj_role_id")                 : null,
+                o.has("volume")          ? o.getInt("volume")                        : 100,
+                o.has("default_playlist")? o.getString("default_playlist")           : null,
+                o.has("repeat_mode")     ? o.getEnum(RepeatMode.class, "repeat_mode"): RepeatMode.OFF,
+                o.has("prefix")          ? o.getString("prefix")                     : null,
+                o.has("skip_ratio")      ? o.getDouble("skip_ratio")                 : -1,
+                o.has("queue_type")      ? o.getEnum(QueueType.class, "queue_type")  : QueueType.FAIR);
+    }
+
+    private Settings createDefaultSettings(long guildId)
+    {
+        return new Settings(this, guildId, 0, 0, 0, 100, null, RepeatMode.OFF, null, -1, QueueType.FAIR);
+    }
+
+    protected void markDirty(Settings s)
+    {
+        dirty.put(s.getGuildId(), s);
+        if(writeScheduled.compareAndSet(false, true))
+            writer.schedule(this::flush, WRITE_DELAY, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Writes any changed settings to the file right away
+     */
+    public synchronized void flush()
+    {
+        writeScheduled.set(false);
+        if(dirty.isEmpty())
+            return;
+        // settings stay in 'writing' until they are actually stored, so they can't be dropped before that
+        Map<Long,JSONObject> changed = new HashMap<>();
+        for(Settings s: dirty.values())
+        {
+            writing.put(s.getGuildId(), s);
+            dirty.remove(s.getGuildId(), s);
+            changed.put(s.getGuildId(), toJSON(s));
+        }
         try {
-            Files.write(OtherUtil.getPath(SETTINGS_FILE), obj.toString(4).getBytes());
+            storage.write(changed);
+            retryDelay = WRITE_DELAY;
         } catch(IOException ex){
-            LoggerFactory.getLogger("Settings").warn("Failed to write to file: "+ex);
+            LoggerFactory.getLogger("Settings").warn("Failed to write to file, trying again in "+retryDelay+" seconds: "+ex);
+            writing.forEach(dirty::putIfAbsent);
+            // try again later, waiting longer each time it keeps failing
+            if(!writer.isShutdown() && writeScheduled.compareAndSet(false, true))
+            {
+                try {
+                    writer.schedule(this::flush, retryDelay, TimeUnit.SECONDS);
+                } catch(RejectedExecutionException ignore) {}
+            }
+            retryDelay = Math.min(retryDelay * 2, MAX_RETRY_DELAY);
         }
+        writing.clear();
+    }
+
+    /**
+     * Stops the background writer, and writes whatever hasn't been written yet
+     */
+    public void shutdown()
+    {
+        writer.shutdownNow();
+        flush();
+    }
+
+    private static JSONObject toJSON(Settings s)
+    {
+        JSONObject o = new JSONObject();
+        if(s.textId!=0)
+            o.put("text_channel_id", Long.toString(s.textId));
+        if(s.voiceId!=0)
+            o.put("voice_channel_id", Long.toString(s.voiceId));
+        if(s.roleId!=0)
+            o.put("dj_role_id", Long.toString(s.roleId));
+        if(s.getVolume()!=100)
+            o.put("volume",s.getVolume());
+        if(s.getDefaultPlaylist() != null)
+            o.put("default_playlist", s.getDefaultPlaylist());
+        if(s.getRepeatMode()!=RepeatMode.OFF)
+            o.put("repeat_mode", s.getRepeatMode());
+        if(s.getPrefix() != null)
+            o.put("prefix", s.getPrefix());
+        if(s.getSkipRatio() != -1)
+            o.put("skip_ratio", s.getSkipRatio());
+        if(s.getQueueType() != QueueType.FAIR)
+            o.put("queue_type", s.getQueueType().name());
+        return o;
     }
 }
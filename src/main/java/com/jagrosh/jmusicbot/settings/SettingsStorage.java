@@ -0,0 +1,67 @@
+/*
+ * Copyright 2026 John Grosh (john.a.grosh@gmail.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jagrosh.jmusicbot.settings;
+
+import java.io.IOException;
+import java.util.Map;
+import org.json.JSONObject;
+
+/**
+ * Where server settings are kept on disk. Each guild's settings are stored as
+ * the same JSON object that serversettings.json has always used.
+ *
+ * @author John Grosh (john.a.grosh@gmail.com)
+ */
+public interface SettingsStorage
+{
+    /**
+     * @return the stored settings of every guild, by guild id
+     * @throws IOException if the settings could not be read
+     */
+    Map<Long,JSONObject> load() throws IOException;
+
+    /**
+     * Gets ready to read settings one guild at a time, without loading them all
+     * @throws IOException if the settings could not be read
+     */
+    void index() throws IOException;
+
+    /**
+     * Reads the settings of one guild. {@link #index()} has to be called first
+     * @param guildId the guild to read settings for
+     * @return the stored settings, or null if there are none
+     * @throws IOException if the settings could not be read
+     */
+    JSONObject read(long guildId) throws IOException;
+
+    /**
+     * Stores the settings of the given guilds, replacing what was stored for them
+     * @param changed the new settings, by guild id
+     * @throws IOException if the settings could not be written
+     */
+    void write(Map<Long,JSONObject> changed) throws IOException;
+
+    static SettingsStorage create(String type)
+    {
+        switch(type.toLowerCase())
+        {
+            case "journal":
+                return new JournalSettingsStorage();
+            default:
+                return new JsonSettingsStorage();
+        }
+    }
+}
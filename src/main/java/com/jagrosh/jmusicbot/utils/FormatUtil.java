@@ -65,14 +65,20 @@ public class FormatUtil {
     public static String progressBar(double percent)
     {
         String str = "";
+        int cell = progressCell(percent);
         for(int i=0; i<12; i++)
-            if(i == (int)(percent*12))
+            if(i == cell)
                 str+="\uD83D\uDD18"; // 🔘
             else
                 str+="▬";
         return str;
     }
     
+    public static int progressCell(double percent)
+    {
+        return (int)(percent*12);
+    }
+    
     public static String volumeIcon(int volume)
     {
         if(volume == 0)
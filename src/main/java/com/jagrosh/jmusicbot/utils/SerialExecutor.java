@@ -0,0 +1,135 @@
+/*
+ * Copyright 2026 John Grosh (jagrosh).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jagrosh.jmusicbot.utils;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs tasks one at a time and in the order they were submitted, borrowing
+ * threads from a shared executor. Nothing else needs to lock state that is
+ * only touched from inside one of these.
+ *
+ * @author John Grosh (jagrosh)
+ */
+public class SerialExecutor implements Executor
+{
+    private final static int BATCH = 32; // tasks to run before giving the thread back
+    private final Executor executor;
+    private final Queue<Runnable> tasks = new ArrayDeque<>();
+    private boolean scheduled = false;
+    private final AtomicReference<Thread> runner = new AtomicReference<>();
+
+    public SerialExecutor(Executor executor)
+    {
+        this.executor = executor;
+    }
+
+    @Override
+    public void execute(Runnable task)
+    {
+        synchronized(tasks)
+        {
+            tasks.add(task);
+            if(scheduled)
+                return;
+            scheduled = true;
+        }
+        executor.execute(this::drain);
+    }
+
+    /**
+     * @return true if called from a task that this executor is running
+     */
+    public boolean inExecutor()
+    {
+        return runner.get() == Thread.currentThread();
+    }
+
+    /**
+     * Runs a task and waits for its result. If this is called from inside
+     * this executor, the task is run right away instead, so it can't wait on itself.
+     * @param <T> the type of the result
+     * @param task the task to run
+     * @return the result of the task
+     */
+    public <T> T call(Supplier<T> task)
+    {
+        if(inExecutor())
+            return task.get();
+        try
+        {
+            return CompletableFuture.supplyAsync(task, this).join();
+        }
+        catch(CompletionException ex)
+        {
+            if(ex.getCause() instanceof RuntimeException)
+                throw (RuntimeException) ex.getCause();
+            throw ex;
+        }
+    }
+
+    public void run(Runnable task)
+    {
+        call(() ->
+        {
+            task.run();
+            return null;
+        });
+    }
+
+    private void drain()
+    {
+        runner.set(Thread.currentThread());
+        try
+        {
+            for(int i = 0; i < BATCH; i++)
+            {
+                Runnable task;
+                synchronized(tasks)
+                {
+                    task = tasks.poll();
+                    if(task == null)
+                    {
+                        scheduled = false;
+                        return;
+                    }
+                }
+                try
+                {
+                    task.run();
+                }
+                catch(Exception ex)
+                {
+                    LoggerFactory.getLogger("SerialExecutor").error("Task failed", ex);
+                }
+            }
+        }
+        finally
+        {
+            // another thread may already have started running tasks after the queue ran out
+            runner.compareAndSet(Thread.currentThread(), null);
+        }
+        // more tasks are waiting, so let other work use this thread first
+        executor.execute(this::drain);
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2026 John Grosh (jagrosh).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jagrosh.jmusicbot.utils;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Keeps many deadlines in a ring of slots, one slot per tick. Scheduling and
+ * expiring are cheap no matter how many items there are, since each tick only
+ * looks at the items in its own slot. Deadlines further away than one turn of
+ * the wheel just wait out the extra turns in their slot.
+ *
+ * Nothing runs on its own; {@link #advance(Consumer)} has to be called once per tick.
+ *
+ * @author John Grosh (jagrosh)
+ * @param <T> the type of the scheduled items
+ */
+public class TimingWheel<T>
+{
+    private final long tickMillis;
+    private final List<List<Entry<T>>> slots;
+    private long tick = 0; // how many ticks have passed
+    private int size = 0;
+
+    public TimingWheel(int slots, long tickMillis)
+    {
+        this.tickMillis = tickMillis;
+        this.slots = new ArrayList<>(slots);
+        for(int i = 0; i < slots; i++)
+            this.slots.add(new ArrayList<>());
+    }
+
+    public long getTickMillis()
+    {
+        return tickMillis;
+    }
+
+    public synchronized int size()
+    {
+        return size;
+    }
+
+    /**
+     * Schedules an item to come out of the wheel after the given delay,
+     * rounded up to a whole number of ticks
+     * @param item the item to schedule
+     * @param delayMillis how long until the item is due
+     */
+    public synchronized void schedule(T item, long delayMillis)
+    {
+        long ticks = Math.max(1, (delayMillis + tickMillis - 1) / tickMillis);
+        int slot = (int)((tick + ticks) % slots.size());
+        slots.get(slot).add(new Entry<>(item, (ticks - 1) / slots.size()));
+        size++;
+    }
+
+    /**
+     * Moves the wheel forward by one tick
+     * @param expired called with every item that is now due, after the wheel has been unlocked
+     */
+    public void advance(Consumer<T> expired)
+    {
+        List<T> due = new ArrayList<>();
+        synchronized(this)
+        {
+            tick++;
+            Iterator<Entry<T>> it = slots.get((int)(tick % slots.size())).iterator();
+            while(it.hasNext())
+            {
+                Entry<T> entry = it.next();
+                if(entry.rounds > 0)
+                    entry.rounds--;
+                else
+                {
+                    it.remove();
+                    due.add(entry.item);
+                }
+            }
+            size -= due.size();
+        }
+        due.forEach(expired);
+    }
+
+    private static class Entry<T>
+    {
+        private final T item;
+        private long rounds; // extra turns of the wheel to wait
+
+        private Entry(T item, long rounds)
+        {
+            this.item = item;
+            this.rounds = rounds;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2026 John Grosh (john.a.grosh@gmail.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jagrosh.jmusicbot;
+
+import com.jagrosh.jmusicbot.audio.AudioFrameSender;
+import com.sedmelluq.discord.lavaplayer.format.StandardAudioDataFormats;
+import com.sedmelluq.discord.lavaplayer.track.playback.AudioFrame;
+import com.sedmelluq.discord.lavaplayer.track.playback.ImmutableAudioFrame;
+import com.sedmelluq.discord.lavaplayer.track.playback.NonAllocatingAudioFrameBuffer;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.Assume;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author John Grosh (john.a.grosh@gmail.com)
+ */
+public class AudioFrameSenderTest
+{
+    private final static int FRAMES = 100000;
+    
+    @Test
+    public void sendsEachFrame() throws InterruptedException
+    {
+        NonAllocatingAudioFrameBuffer frames = new NonAllocatingAudioFrameBuffer(1000, StandardAudioDataFormats.DISCORD_OPUS, new AtomicBoolean());
+        AudioFrameSender sender = new AudioFrameSender();
+        assertFalse(sender.fill(frames));
+        for(int i=1; i<=3; i++)
+        {
+            byte[] data = new byte[i * 10];
+            data[0] = (byte) i;
+            frames.consume(new ImmutableAudioFrame(i * 20, data, 100, StandardAudioDataFormats.DISCORD_OPUS));
+        }
+        for(int i=1; i<=3; i++)
+        {
+            assertTrue(sender.fill(frames));
+            ByteBuffer buffer = sender.next();
+            assertEquals(i * 10, buffer.remaining());
+            assertEquals(i, buffer.get(0));
+        }
+        assertFalse(sender.fill(frames));
+    }
+    
+    @Test
+    public void sendingDoesNotAllocate() throws InterruptedException
+    {
+        // the JDK's own bean, which can tell how much a thread has allocated
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) threads;
+        Assume.assumeTrue(bean.isThreadAllocatedMemorySupported());
+        bean.setThreadAllocatedMemoryEnabled(true);
+        
+        NonAllocatingAudioFrameBuffer frames = new NonAllocatingAudioFrameBuffer(1000, StandardAudioDataFormats.DISCORD_OPUS, new AtomicBoolean());
+        AudioFrameSender sender = new AudioFrameSender();
+        AudioFrame frame = new ImmutableAudioFrame(0, new byte[160], 100, StandardAudioDataFormats.DISCORD_OPUS);
+        // once to warm up, so the measured run isn't counting what loading and compiling allocate
+        send(frames, sender, frame);
+        long thread = Thread.currentThread().getId();
+        long before = bean.getThreadAllocatedBytes(thread);
+        long sent = send(frames, sender, frame);
+        long allocated = bean.getThreadAllocatedBytes(thread) - before;
+        assertEquals((long) FRAMES * 160, sent);
+        // a few bytes go to the measuring itself, but nothing per frame
+        assertTrue("allocated " + allocated + " bytes for " + FRAMES + " frames", allocated < FRAMES / 10);
+    }
+    
+    private static long send(NonAllocatingAudioFrameBuffer frames, AudioFrameSender sender, AudioFrame frame) throws InterruptedException
+    {
+        long sent = 0;
+        for(int i=0; i<FRAMES; i++)
+        {
+            frames.consume(frame);
+            if(sender.fill(frames))
+                sent += sender.next().remaining();
+        }
+        return sent;
+    }
+}
@@ -16,7 +16,16 @@
 package com.jagrosh.jmusicbot;
 
 import com.jagrosh.jmusicbot.queue.FairQueue;
+import com.jagrosh.jmusicbot.queue.LinearQueue;
 import com.jagrosh.jmusicbot.queue.Queueable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
 import org.junit.Test;
 import static org.junit.Assert.*;
 
@@ -46,6 +55,200 @@ public class FairQueueTest
         assertEquals(queue.size(), size);
     }
     
+    @Test
+    public void interleavesRequesters()
+    {
+        FairQueue<Q> queue = new FairQueue<>(null);
+        for(long id: new long[]{1, 1, 1, 2, 2, 3})
+            queue.add(new Q(id));
+        assertEquals("1 2 3 1 2 1", identifiers(queue.getList()));
+    }
+    
+    @Test
+    public void oneEntryPerRound()
+    {
+        // split the list into rounds wherever a requester repeats; each
+        // requester's n-th entry has to end up in the n-th round
+        Random random = new Random(7);
+        FairQueue<Q> queue = new FairQueue<>(null);
+        for(int i=0; i<2000; i++)
+            queue.add(new Q(random.nextInt(8)));
+        Map<Long,Integer> counts = new HashMap<>();
+        Set<Long> round = new HashSet<>();
+        int rounds = 0;
+        for(Q q: queue.getList())
+        {
+            if(!round.add(q.getIdentifier()))
+            {
+                round.clear();
+                round.add(q.getIdentifier());
+                rounds++;
+            }
+            assertEquals(rounds, (int)counts.merge(q.getIdentifier(), 1, Integer::sum) - 1);
+        }
+    }
+    
+    @Test
+    public void laterEntryGoesToTheEndOfItsRound()
+    {
+        // the old scan inserted before the first repeat after the last 1, giving 1 2 1 2
+        FairQueue<Q> queue = new FairQueue<>(null);
+        for(long id: new long[]{1, 2, 2, 1})
+            queue.add(new Q(id));
+        assertEquals("1 2 2 1", identifiers(queue.getList()));
+    }
+    
+    @Test
+    public void staysFairAfterPulling()
+    {
+        FairQueue<Q> queue = new FairQueue<>(null);
+        for(long id: new long[]{1, 1, 2, 2})
+            queue.add(new Q(id));
+        assertEquals(1, queue.pull().getIdentifier());
+        queue.add(new Q(3));
+        queue.add(new Q(1));
+        assertEquals("2 3 1 2 1", identifiers(queue.getList()));
+    }
+    
+    @Test
+    public void roundsSurvivePullsAndRemoves()
+    {
+        FairQueue<Q> queue = new FairQueue<>(null);
+        queue.add(new Q(2));
+        queue.add(new Q(3));
+        assertEquals(2, queue.remove(0).getIdentifier());
+        queue.add(new Q(1));
+        queue.add(new Q(3));
+        queue.add(new Q(1));
+        assertEquals("3 1 3 1", identifiers(queue.getList()));
+        assertEquals(3, queue.pull().getIdentifier());
+        // the first round still has 1 in it, and 2 joins it there
+        queue.add(new Q(2));
+        assertEquals("1 2 3 1", identifiers(queue.getList()));
+        queue.add(new Q(2));
+        assertEquals("1 2 3 1 2", identifiers(queue.getList()));
+    }
+    
+    @Test
+    public void removedEntryLeavesRoomInItsRound()
+    {
+        FairQueue<Q> queue = new FairQueue<>(null);
+        for(long id: new long[]{1, 2, 3, 1, 2, 3})
+            queue.add(new Q(id));
+        assertEquals(2, queue.remove(1).getIdentifier());
+        queue.add(new Q(4));
+        assertEquals("1 3 4 1 2 3", identifiers(queue.getList()));
+        queue.add(new Q(2));
+        assertEquals("1 3 4 1 2 3 2", identifiers(queue.getList()));
+        assertEquals(1, queue.pull().getIdentifier());
+        assertEquals(3, queue.pull().getIdentifier());
+        queue.add(new Q(5));
+        queue.add(new Q(4));
+        assertEquals("4 5 1 2 3 4 2", identifiers(queue.getList()));
+    }
+    
+    @Test
+    public void removeAllAndShuffle()
+    {
+        FairQueue<Q> queue = new FairQueue<>(null);
+        for(int i=0; i<50; i++)
+        {
+            queue.add(new Q(1));
+            queue.add(new Q(2));
+            queue.add(new Q(3));
+        }
+        assertEquals(50, queue.shuffle(2));
+        assertEquals(150, queue.size());
+        assertEquals(50, queue.removeAll(2));
+        assertEquals(0, queue.removeAll(2));
+        assertEquals(100, queue.size());
+        for(Q q: queue.getList())
+            assertTrue(q.getIdentifier() != 2);
+        queue.add(new Q(2));
+        assertEquals(2, queue.get(2).getIdentifier());
+    }
+    
+    @Test
+    public void movesAndSkipsKeepIndex()
+    {
+        FairQueue<Q> queue = new FairQueue<>(null);
+        for(long id: new long[]{1, 1, 1, 2, 2, 3})
+            queue.add(new Q(id));
+        queue.moveItem(5, 0);
+        assertEquals("1 1 2 3 1 2", identifiers(queue.getList()));
+        queue.addAt(0, new Q(4));
+        queue.skip(2);
+        assertEquals(1, queue.remove(0).getIdentifier());
+        queue.add(new Q(5));
+        assertEquals("2 3 5 1 2", identifiers(queue.getList()));
+        assertEquals(1, queue.removeAll(1));
+        queue.add(new Q(1));
+        assertEquals("2 3 5 1 2", identifiers(queue.getList()));
+        queue.clear();
+        queue.add(new Q(6));
+        assertEquals("6", identifiers(queue.getList()));
+    }
+    
+    @Test
+    public void addAllMatchesAdd()
+    {
+        Random random = new Random(11);
+        FairQueue<Q> one = new FairQueue<>(null);
+        FairQueue<Q> bulk = new FairQueue<>(null);
+        for(int i=0; i<20; i++)
+        {
+            List<Q> batch = new ArrayList<>();
+            int size = random.nextInt(100);
+            for(int j=0; j<size; j++)
+                batch.add(new Q(random.nextInt(i%3==0 ? 1 : 6)));
+            batch.forEach(one::add);
+            bulk.addAll(batch);
+            assertEquals(one.getList(), bulk.getList());
+            for(int j=random.nextInt(20); j>0 && !one.isEmpty(); j--)
+                assertSame(one.pull(), bulk.pull());
+        }
+        Q q = new Q(3);
+        assertEquals(one.add(q), bulk.add(q));
+    }
+    
+    @Test(timeout = 10000)
+    public void singletonAddAllOnLargeQueue()
+    {
+        // playlist loads hand over one entry at a time, which mustn't
+        // rebuild the rest of the queue on every call
+        Random random = new Random(5);
+        FairQueue<Q> one = new FairQueue<>(null);
+        FairQueue<Q> bulk = new FairQueue<>(null);
+        for(int i=0; i<100000; i++)
+        {
+            Q q = new Q(i < 50000 ? random.nextInt(20) : 0);
+            one.add(q);
+            bulk.addAll(Collections.singletonList(q));
+        }
+        assertEquals(one.getList(), bulk.getList());
+    }
+    
+    @Test
+    public void switchingFromLinear()
+    {
+        LinearQueue<Q> linear = new LinearQueue<>(null);
+        for(long id: new long[]{1, 1, 2, 2, 3})
+            linear.add(new Q(id));
+        FairQueue<Q> queue = new FairQueue<>(linear);
+        assertEquals(linear.getList(), queue.getList());
+        queue.add(new Q(3));
+        queue.add(new Q(4));
+        assertEquals("1 4 1 2 2 3 3", identifiers(queue.getList()));
+    }
+    
+    private static String identifiers(List<Q> list)
+    {
+        StringBuilder sb = new StringBuilder();
+        for(Q q: list)
+            sb.append(sb.length() == 0 ? "" : " ").append(q.getIdentifier());
+        return sb.toString();
+    }
+    
     private class Q implements Queueable
     {
         private final long identifier;
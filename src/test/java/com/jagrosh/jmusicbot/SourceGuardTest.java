@@ -0,0 +1,159 @@
+/*
+ * Copyright 2026 John Grosh (john.a.grosh@gmail.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jagrosh.jmusicbot;
+
+import com.jagrosh.jmusicbot.audio.SourceGuard;
+import com.sedmelluq.discord.lavaplayer.player.AudioPlayerManager;
+import com.sedmelluq.discord.lavaplayer.source.AudioSourceManager;
+import com.sedmelluq.discord.lavaplayer.track.AudioItem;
+import com.sedmelluq.discord.lavaplayer.track.AudioReference;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrackInfo;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author John Grosh (john.a.grosh@gmail.com)
+ */
+public class SourceGuardTest
+{
+    private final static int BURST = 5;
+    private final FakeSource source = new FakeSource();
+    private final ExecutorService executor = Executors.newFixedThreadPool(BURST);
+
+    @After
+    public void shutdown()
+    {
+        source.release.countDown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void burstIsLimited() throws Exception
+    {
+        // room for two loads at once; the first teaches the guard that searches are this source's, using up one
+        SourceGuard guard = new SourceGuard(source, 12, 0);
+        assertNotNull(guard.loadItem(null, new AudioReference("ytsearch:first", null)));
+
+        AtomicInteger rejected = new AtomicInteger();
+        CountDownLatch finished = new CountDownLatch(BURST);
+        List<Future<?>> loads = new ArrayList<>();
+        for(int i=0; i<BURST; i++)
+        {
+            String identifier = "ytsearch:" + i;
+            loads.add(executor.submit(() ->
+            {
+                try
+                {
+                    guard.loadItem(null, new AudioReference(identifier, null));
+                }
+                catch(SourceGuard.Unavailable ex)
+                {
+                    rejected.incrementAndGet();
+                }
+                finished.countDown();
+            }));
+        }
+        // everything but the one load that got in is turned away while it is still running
+        for(int i=0; i<50 && rejected.get() < BURST - 1; i++)
+            Thread.sleep(20);
+        assertEquals(BURST - 1, rejected.get());
+        assertEquals(2, source.loads.get());
+        source.release.countDown();
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+        for(Future<?> load: loads)
+            load.get();
+        assertEquals(BURST - 1, rejected.get());
+        assertEquals(2, source.loads.get());
+    }
+
+    @Test
+    public void unclaimedLoadsGiveTheirTokenBack()
+    {
+        SourceGuard guard = new SourceGuard(source, 12, 0);
+        source.release.countDown();
+        assertNotNull(guard.loadItem(null, new AudioReference("ytsearch:first", null)));
+        // asked about searches it doesn't answer, which leaves its one remaining token alone
+        for(int i=0; i<BURST; i++)
+            assertNull(guard.loadItem(null, new AudioReference("ytsearch:skip", null)));
+        assertNotNull(guard.loadItem(null, new AudioReference("ytsearch:second", null)));
+    }
+
+    /**
+     * Answers "ytsearch:" identifiers, except "ytsearch:skip", waiting to be
+     * released for all of them but the first
+     */
+    private static class FakeSource implements AudioSourceManager
+    {
+        private final AtomicInteger loads = new AtomicInteger();
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        public String getSourceName()
+        {
+            return "fake";
+        }
+
+        @Override
+        public AudioItem loadItem(AudioPlayerManager manager, AudioReference reference)
+        {
+            if(!reference.identifier.startsWith("ytsearch:") || reference.identifier.equals("ytsearch:skip"))
+                return null;
+            if(loads.incrementAndGet() > 1)
+            {
+                try
+                {
+                    release.await(5, TimeUnit.SECONDS);
+                }
+                catch(InterruptedException ex)
+                {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return AudioReference.NO_TRACK;
+        }
+
+        @Override
+        public boolean isTrackEncodable(AudioTrack track)
+        {
+            return false;
+        }
+
+        @Override
+        public void encodeTrack(AudioTrack track, DataOutput output) {}
+
+        @Override
+        public AudioTrack decodeTrack(AudioTrackInfo trackInfo, DataInput input)
+        {
+            return null;
+        }
+
+        @Override
+        public void shutdown() {}
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2026 John Grosh (john.a.grosh@gmail.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jagrosh.jmusicbot;
+
+import com.jagrosh.jmusicbot.audio.TrackCache;
+import com.sedmelluq.discord.lavaplayer.player.AudioLoadResultHandler;
+import com.sedmelluq.discord.lavaplayer.player.AudioPlayerManager;
+import com.sedmelluq.discord.lavaplayer.player.DefaultAudioPlayerManager;
+import com.sedmelluq.discord.lavaplayer.source.AudioSourceManager;
+import com.sedmelluq.discord.lavaplayer.tools.FriendlyException;
+import com.sedmelluq.discord.lavaplayer.track.AudioItem;
+import com.sedmelluq.discord.lavaplayer.track.AudioPlaylist;
+import com.sedmelluq.discord.lavaplayer.track.AudioReference;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrackInfo;
+import com.sedmelluq.discord.lavaplayer.track.BasicAudioPlaylist;
+import com.sedmelluq.discord.lavaplayer.track.DelegatedAudioTrack;
+import com.sedmelluq.discord.lavaplayer.track.playback.LocalAudioTrackExecutor;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author John Grosh (john.a.grosh@gmail.com)
+ */
+public class TrackCacheTest
+{
+    private final DefaultAudioPlayerManager manager = new DefaultAudioPlayerManager();
+    private final FakeSearch search = new FakeSearch();
+
+    @After
+    public void shutdown()
+    {
+        search.release.countDown();
+        manager.shutdown();
+    }
+
+    @Test
+    public void concurrentSearchesAreLoadedOnce() throws Exception
+    {
+        // nothing is stored, so the second search can only get the result by waiting on the first
+        TrackCache cache = register(0, 5);
+        Results first = new Results();
+        Results second = new Results();
+        Future<Void> a = manager.loadItem("ytsearch:x", cache.wrap("ytsearch:x", first));
+        assertTrue(search.started.await(5, TimeUnit.SECONDS));
+        Future<Void> b = manager.loadItem("ytsearch:x", cache.wrap("ytsearch:x", second));
+        // gives the second load time to find the first one still running
+        Thread.sleep(500);
+        search.release.countDown();
+        a.get(5, TimeUnit.SECONDS);
+        b.get(5, TimeUnit.SECONDS);
+
+        assertEquals(1, search.loads.get());
+        assertEquals(1, cache.getShared());
+        assertEquals(1, first.playlists.size());
+        assertEquals(1, second.playlists.size());
+        AudioTrack track = first.playlists.get(0).getTracks().get(0);
+        AudioTrack copy = second.playlists.get(0).getTracks().get(0);
+        assertTrue(second.playlists.get(0).isSearchResult());
+        assertEquals(track.getIdentifier(), copy.getIdentifier());
+        assertNotSame(track, copy);
+    }
+
+    @Test
+    public void missingSearchIsRemembered() throws Exception
+    {
+        // the results of searches aren't kept, but a search that found nothing still is
+        TrackCache cache = register(16, 0);
+        search.release.countDown();
+        Results first = new Results();
+        Results second = new Results();
+        manager.loadItem("ytsearch:nothing", cache.wrap("ytsearch:nothing", first)).get(5, TimeUnit.SECONDS);
+        manager.loadItem("ytsearch:nothing", cache.wrap("ytsearch:nothing", second)).get(5, TimeUnit.SECONDS);
+
+        assertEquals(1, search.loads.get());
+        assertEquals(1, first.missing.get());
+        assertEquals(1, second.missing.get());
+        assertEquals(1, cache.getHits());
+    }
+
+    private TrackCache register(int size, long searchMinutes)
+    {
+        TrackCache cache = new TrackCache(manager, size, 60, searchMinutes, null);
+        manager.registerSourceManager(cache);
+        manager.registerSourceManager(search);
+        return cache;
+    }
+
+    private static class Results implements AudioLoadResultHandler
+    {
+        private final List<AudioPlaylist> playlists = Collections.synchronizedList(new ArrayList<>());
+        private final AtomicInteger missing = new AtomicInteger();
+
+        @Override
+        public void trackLoaded(AudioTrack track)
+        {
+            fail("searches should load as playlists");
+        }
+
+        @Override
+        public void playlistLoaded(AudioPlaylist playlist)
+        {
+            playlists.add(playlist);
+        }
+
+        @Override
+        public void noMatches()
+        {
+            missing.incrementAndGet();
+        }
+
+        @Override
+        public void loadFailed(FriendlyException ex)
+        {
+            fail(ex.getMessage());
+        }
+    }
+
+    /**
+     * Answers "ytsearch:" identifiers with one track, or with nothing for
+     * "ytsearch:nothing", after being released
+     */
+    private static class FakeSearch implements AudioSourceManager
+    {
+        private final AtomicInteger loads = new AtomicInteger();
+        private final CountDownLatch started = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        public String getSourceName()
+        {
+            return "fake";
+        }
+
+        @Override
+        public AudioItem loadItem(AudioPlayerManager manager, AudioReference reference)
+        {
+            if(!reference.identifier.startsWith("ytsearch:"))
+                return null;
+            loads.incrementAndGet();
+            started.countDown();
+            try
+            {
+                release.await(5, TimeUnit.SECONDS);
+            }
+            catch(InterruptedException ex)
+            {
+                Thread.currentThread().interrupt();
+            }
+            String query = reference.identifier.substring(9);
+            if(query.equals("nothing"))
+                return AudioReference.NO_TRACK;
+            AudioTrack track = new FakeTrack(new AudioTrackInfo(query, "someone", 1000, "id-" + query, false, "https://example.com/" + query));
+            return new BasicAudioPlaylist("Search results for: " + query, Collections.singletonList(track), null, true);
+        }
+
+        @Override
+        public boolean isTrackEncodable(AudioTrack track)
+        {
+            return false;
+        }
+
+        @Override
+        public void encodeTrack(AudioTrack track, DataOutput output) {}
+
+        @Override
+        public AudioTrack decodeTrack(AudioTrackInfo trackInfo, DataInput input)
+        {
+            return null;
+        }
+
+        @Override
+        public void shutdown() {}
+    }
+
+    private static class FakeTrack extends DelegatedAudioTrack
+    {
+        private FakeTrack(AudioTrackInfo info)
+        {
+            super(info);
+        }
+
+        @Override
+        public void process(LocalAudioTrackExecutor executor) {}
+
+        @Override
+        protected AudioTrack makeShallowClone()
+        {
+            return new FakeTrack(trackInfo);
+        }
+    }
+}
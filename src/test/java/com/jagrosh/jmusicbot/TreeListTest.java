@@ -0,0 +1,92 @@
+/*
+ * Copyright 2026 John Grosh <john.a.grosh@gmail.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jagrosh.jmusicbot;
+
+import com.jagrosh.jmusicbot.queue.TreeList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author John Grosh (john.a.grosh@gmail.com)
+ */
+public class TreeListTest
+{
+    @Test
+    public void matchesArrayList()
+    {
+        Random random = new Random(42);
+        List<Integer> expected = new ArrayList<>();
+        TreeList<Integer> list = new TreeList<>();
+        for(int i=0; i<5000; i++)
+        {
+            int op = random.nextInt(6);
+            if(op <= 2 || expected.isEmpty())
+            {
+                int index = random.nextInt(expected.size()+1);
+                expected.add(index, i);
+                list.add(index, i);
+            }
+            else if(op == 3)
+            {
+                int index = random.nextInt(expected.size());
+                assertEquals(expected.remove(index), list.remove(index));
+            }
+            else if(op == 4)
+            {
+                int index = random.nextInt(expected.size());
+                assertEquals(expected.set(index, -i), list.set(index, -i));
+            }
+            else
+            {
+                int from = random.nextInt(expected.size());
+                int to = from + random.nextInt(Math.min(5, expected.size()-from)+1);
+                expected.subList(from, to).clear();
+                list.subList(from, to).clear();
+            }
+            assertEquals(expected.size(), list.size());
+        }
+        assertEquals(expected, list);
+    }
+
+    @Test
+    public void bulkInsert()
+    {
+        TreeList<Integer> list = new TreeList<>(Arrays.asList(0, 1, 5, 6));
+        list.addAll(2, Arrays.asList(2, 3, 4));
+        list.addAll(Arrays.asList(7, 8));
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4, 5, 6, 7, 8), list);
+    }
+
+    @Test
+    public void iteratorRemove()
+    {
+        TreeList<Integer> list = new TreeList<>();
+        for(int i=0; i<100; i++)
+            list.add(i);
+        for(Iterator<Integer> it = list.iterator(); it.hasNext();)
+            if(it.next() % 3 == 0)
+                it.remove();
+        assertEquals(66, list.size());
+        for(int i=0; i<list.size(); i++)
+            assertTrue(list.get(i) % 3 != 0);
+    }
+}